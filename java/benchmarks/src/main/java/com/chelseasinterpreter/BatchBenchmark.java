@@ -0,0 +1,77 @@
+package com.chelseasinterpreter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Many small rule-like expressions, evaluated one fresh pipeline at a
+// time versus through one BatchEvaluator, with and without a cache big
+// enough to hold every rule.
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BatchBenchmark {
+    @Param({"1000"})
+    public int size;
+
+    private List<String> rules;
+    private BatchEvaluator evaluator;
+    private BatchEvaluator cachingEvaluator;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        rules = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int threshold = random.nextInt(100);
+            switch (i % 3) {
+                case 0:
+                    rules.add(random.nextInt(100) + " * 2 > " + threshold + " ? 1 : 0");
+                    break;
+                case 1:
+                    rules.add("\"tier\" + \"" + threshold + "\" == \"tier" + threshold + "\"");
+                    break;
+                default:
+                    rules.add("(" + threshold + " - 50) / 2 <= 10");
+            }
+        }
+        evaluator = new BatchEvaluator();
+        cachingEvaluator = new BatchEvaluator(new ExpressionCache(size));
+    }
+
+    @Benchmark
+    public Object[] perItemPipeline() {
+        Object[] results = new Object[rules.size()];
+        for (int i = 0; i < results.length; i++) {
+            Expr expression = new Parser(new Scanner(rules.get(i))).parse();
+            results[i] = new Interpreter().evaluate(expression);
+        }
+        return results;
+    }
+
+    @Benchmark
+    public BatchEvaluator.Result[] batch() {
+        return evaluator.evaluate(rules);
+    }
+
+    @Benchmark
+    public BatchEvaluator.Result[] batchCached() {
+        return cachingEvaluator.evaluate(rules);
+    }
+}
@@ -0,0 +1,135 @@
+package com.chelseasinterpreter;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The same walk, adding up every number in the tree, done through accept()
+// with a Visitor<Double> and through Expr.dispatch() with a DoubleVisitor,
+// which switches on kind and never boxes. Plus equals() between a tree and
+// a separately parsed copy of it. Only the shapes that are shallow enough
+// for the recursive visitors here. The heap is collected once the trees
+// are built: the boxing walk sets off collections that lay its tree out
+// in the order it is visited, and without one up front the walk that
+// doesn't allocate is left chasing the tree as the parser left it.
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DispatchBenchmark {
+    private final BoxedSum boxed = new BoxedSum();
+    private final PrimitiveSum primitive = new PrimitiveSum();
+
+    @Param({"DEEP_NESTING", "BALANCED", "REPETITIVE"})
+    public Workload.Shape shape;
+
+    @Param({"100", "10000"})
+    public int size;
+
+    private Expr expression;
+    private Expr copy;
+
+    @Setup
+    public void setUp() {
+        String source = Workload.generate(shape, size);
+        expression = new Parser(new Scanner(source)).parse();
+        copy = new Parser(new Scanner(source)).parse();
+        System.gc();
+    }
+
+    @Benchmark
+    public double accept() {
+        return expression.accept(boxed);
+    }
+
+    @Benchmark
+    public double dispatch() {
+        return Expr.dispatch(expression, primitive);
+    }
+
+    @Benchmark
+    public boolean equality() {
+        return expression.equals(copy);
+    }
+
+    private static double number(Expr.Literal expr) {
+        return expr.value instanceof Double ? (double) expr.value : 0;
+    }
+
+    private static final class BoxedSum implements Expr.Visitor<Double> {
+        @Override
+        public Double visitBinaryExpr(Expr.Binary expr) {
+            return expr.left.accept(this) + expr.right.accept(this);
+        }
+
+        @Override
+        public Double visitGroupingExpr(Expr.Grouping expr) {
+            return expr.expression.accept(this);
+        }
+
+        @Override
+        public Double visitLiteralExpr(Expr.Literal expr) {
+            return number(expr);
+        }
+
+        @Override
+        public Double visitUnaryExpr(Expr.Unary expr) {
+            return expr.right.accept(this);
+        }
+
+        @Override
+        public Double visitConditionalExpr(Expr.Conditional expr) {
+            return expr.condition.accept(this) + expr.thenBranch.accept(this) + expr.elseBranch.accept(this);
+        }
+
+        @Override
+        public Double visitErrorExpr(Expr.Error expr) {
+            return 0.0;
+        }
+    }
+
+    private static final class PrimitiveSum implements Expr.DoubleVisitor {
+        @Override
+        public double visitBinaryExpr(Expr.Binary expr) {
+            return Expr.dispatch(expr.left, this) + Expr.dispatch(expr.right, this);
+        }
+
+        @Override
+        public double visitGroupingExpr(Expr.Grouping expr) {
+            return Expr.dispatch(expr.expression, this);
+        }
+
+        @Override
+        public double visitLiteralExpr(Expr.Literal expr) {
+            return number(expr);
+        }
+
+        @Override
+        public double visitUnaryExpr(Expr.Unary expr) {
+            return Expr.dispatch(expr.right, this);
+        }
+
+        @Override
+        public double visitConditionalExpr(Expr.Conditional expr) {
+            return Expr.dispatch(expr.condition, this) + Expr.dispatch(expr.thenBranch, this) +
+                    Expr.dispatch(expr.elseBranch, this);
+        }
+
+        @Override
+        public double visitErrorExpr(Expr.Error expr) {
+            return 0;
+        }
+    }
+}
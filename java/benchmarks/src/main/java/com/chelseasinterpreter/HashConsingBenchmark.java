@@ -0,0 +1,63 @@
+package com.chelseasinterpreter;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Hash-consing a parsed tree into a DAG, and evaluating the DAG with
+// memoization against evaluating the tree. The node counts before and
+// after show up next to the times as secondary results.
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HashConsingBenchmark {
+    private final Interpreter interpreter = new Interpreter();
+    private final HashConser hashConser = new HashConser();
+    private final MemoizingInterpreter memoizingInterpreter = new MemoizingInterpreter(
+            new MemoryOutputSink(), ErrorReporter.standardError());
+    private HashConser.Dag dag;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Nodes {
+        public long nodesBefore;
+        public long nodesAfter;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp(Workload workload) {
+        dag = hashConser.cons(workload.expression);
+    }
+
+    @Benchmark
+    public HashConser.Dag cons(Workload workload, Nodes nodes) {
+        HashConser.Dag consed = hashConser.cons(workload.expression);
+        nodes.nodesBefore = consed.nodesBefore;
+        nodes.nodesAfter = consed.nodesAfter;
+        return consed;
+    }
+
+    @Benchmark
+    public Object treeWalker(Workload workload) {
+        return interpreter.evaluate(workload.expression);
+    }
+
+    @Benchmark
+    public Object memoized() {
+        return memoizingInterpreter.evaluate(dag);
+    }
+}
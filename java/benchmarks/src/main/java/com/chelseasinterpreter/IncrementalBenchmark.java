@@ -0,0 +1,64 @@
+package com.chelseasinterpreter;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// One keystroke: a character near the middle of the workload swapped for
+// another and back, then the source scanned and parsed from scratch
+// versus brought up to date by an IncrementalSource.
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IncrementalBenchmark {
+    private String[] versions;
+    private int offset;
+    private IncrementalSource source;
+    private int edits = 0;
+
+    @Setup(Level.Trial)
+    public void setUp(Workload workload) {
+        String text = workload.source;
+
+        // A digit or letter, so the edit changes a literal without
+        // changing the shape of the tree.
+        offset = text.length() / 2;
+        while (!Character.isLetterOrDigit(text.charAt(offset))) offset++;
+        char original = text.charAt(offset);
+        char replacement = Character.isDigit(original)
+                ? (original == '9' ? '8' : (char) (original + 1))
+                : (original == 'z' ? 'y' : (char) (original + 1));
+
+        versions = new String[] {
+                text,
+                text.substring(0, offset) + replacement + text.substring(offset + 1)
+        };
+        source = new IncrementalSource(text);
+    }
+
+    @Benchmark
+    public Expr fromScratch() {
+        String text = versions[++edits & 1];
+        return new Parser(new Scanner(text)).parse();
+    }
+
+    @Benchmark
+    public Expr incremental() {
+        String text = versions[++edits & 1];
+        source.edit(offset, offset + 1, text.subSequence(offset, offset + 1));
+        return source.tree();
+    }
+}
@@ -0,0 +1,75 @@
+package com.chelseasinterpreter;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Evaluates the same parsed expression with each engine. Results aren't
+// printed, so the numbers are evaluation alone.
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class InterpreterBenchmark {
+    private final Interpreter interpreter = new Interpreter();
+    private final VirtualMachine vm = new VirtualMachine();
+    private Chunk chunk;
+    private Node.Root specializedTree;
+    private final ParallelInterpreter parallelInterpreter = new ParallelInterpreter(
+            ForkJoinPool.commonPool(), new MemoryOutputSink(), ErrorReporter.standardError());
+    private ParallelInterpreter.Prepared parallelTree;
+    private final IterativeInterpreter iterativeInterpreter = new IterativeInterpreter(
+            new MemoryOutputSink(), ErrorReporter.standardError());
+
+    @Setup(Level.Trial)
+    public void setUp(Workload workload) {
+        chunk = new BytecodeCompiler().compile(workload.expression);
+        specializedTree = new SpecializingInterpreter().prepare(workload.expression);
+        parallelTree = parallelInterpreter.prepare(workload.expression, ParallelInterpreter.DEFAULT_THRESHOLD);
+    }
+
+    @Benchmark
+    public Object treeWalker(Workload workload) {
+        return interpreter.evaluate(workload.expression);
+    }
+
+    @Benchmark
+    public Object iterative(Workload workload) {
+        return iterativeInterpreter.evaluate(workload.expression);
+    }
+
+    @Benchmark
+    public Object bytecode() {
+        return vm.run(chunk);
+    }
+
+    @Benchmark
+    public Object specializing() {
+        return specializedTree.execute();
+    }
+
+    // Only differs from treeWalker where the tree is wide enough to fork,
+    // which among the workloads means BALANCED at the larger size.
+    @Benchmark
+    public Object parallel() {
+        return parallelInterpreter.evaluate(parallelTree);
+    }
+
+    @Benchmark
+    public Object optimizeThenTreeWalker(Workload workload) {
+        return interpreter.evaluate(new Optimizer().optimize(workload.expression));
+    }
+}
@@ -0,0 +1,63 @@
+package com.chelseasinterpreter;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// One big source scanned by the sequential Scanner versus a
+// ParallelScanner on 1..N threads. The parallel scan does more work in
+// all, so on one thread it loses; it should pull ahead with the cores.
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelScanBenchmark {
+    private static final int OPERANDS = 500_000;
+
+    @Param({"STRING_HEAVY", "NUMBER_HEAVY", "BALANCED"})
+    public Workload.Shape shape;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private String source;
+    private ForkJoinPool pool;
+    private ParallelScanner scanner;
+
+    @Setup
+    public void setUp() {
+        source = Workload.generate(shape, OPERANDS);
+        pool = new ForkJoinPool(threads);
+        scanner = new ParallelScanner(pool);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Benchmark
+    public List<Token> sequential() {
+        return new Scanner(source).scanTokens();
+    }
+
+    @Benchmark
+    public List<Token> parallel() {
+        return scanner.scanTokens(source, ErrorReporter.standardError());
+    }
+}
@@ -0,0 +1,34 @@
+package com.chelseasinterpreter;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+    @Benchmark
+    public Expr parse(Workload workload) {
+        return new Parser(workload.tokens).parse();
+    }
+
+    @Benchmark
+    public Expr parseIteratively(Workload workload) {
+        return new Parser(workload.tokens).parseIteratively();
+    }
+
+    // Scanning and parsing in one pass, the way LoxEngine.run does it.
+    @Benchmark
+    public Expr scanAndParse(Workload workload) {
+        return new Parser(new Scanner(workload.source)).parse();
+    }
+}
@@ -0,0 +1,34 @@
+package com.chelseasinterpreter;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PrinterBenchmark {
+    private final AstPrinter astPrinter = new AstPrinter();
+    private final RpnPrinter rpnPrinter = new RpnPrinter();
+
+    @Benchmark
+    public String astPrinter(Workload workload) {
+        return astPrinter.print(workload.expression);
+    }
+
+    @Benchmark
+    public String rpnPrinter(Workload workload) {
+        return rpnPrinter.print(workload.expression);
+    }
+}
@@ -0,0 +1,78 @@
+package com.chelseasinterpreter;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Sources full of mistakes: one with a syntax error in every one of its
+// ';'-separated expressions, parsed with recovery on, and one expression
+// that fails at runtime, evaluated over and over.
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RecoveryBenchmark {
+    private static final ErrorReporter IGNORED = new ErrorReporter() {
+        @Override
+        public void error(int line, int column, String message) {
+        }
+
+        @Override
+        public void error(Token token, String message) {
+        }
+
+        @Override
+        public void runtimeError(RuntimeError error) {
+        }
+    };
+
+    @Param({"100", "10000"})
+    public int errors;
+
+    private List<Token> tokens;
+    private Expr failing;
+    private final Interpreter interpreter = new Interpreter(new MemoryOutputSink(), IGNORED);
+
+    @Setup
+    public void setUp() {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < errors; i++) {
+            source.append(i % 2 == 0 ? "(1 + ) * 2;\n" : "3 * / 4;\n");
+        }
+        tokens = new Scanner(source.toString(), IGNORED).scanTokens();
+        failing = new Parser(new Scanner("1 + nil")).parse();
+    }
+
+    @Benchmark
+    public Expr parseRecovering() {
+        Parser parser = new Parser(tokens.iterator()::next, IGNORED);
+        parser.setRecovering(true);
+        return parser.parse();
+    }
+
+    @Benchmark
+    public int runtimeErrors() {
+        int raised = 0;
+        for (int i = 0; i < errors; i++) {
+            try {
+                interpreter.evaluate(failing);
+            } catch (RuntimeError error) {
+                raised++;
+            }
+        }
+        return raised;
+    }
+}
@@ -0,0 +1,94 @@
+package com.chelseasinterpreter;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The same fixed amount of work, split across 1..N threads that each run
+// their own LoxEngine. With no shared state between engines, time per
+// operation should fall with threads up to the number of cores.
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScalingBenchmark {
+    private static final int SOURCES = 256;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private List<String> sources;
+    private ExecutorService pool;
+    private ThreadLocal<LoxEngine> engines;
+
+    @Setup
+    public void setUp() {
+        sources = new ArrayList<>(SOURCES);
+        Workload.Shape[] shapes = Workload.Shape.values();
+        for (int i = 0; i < SOURCES; i++) {
+            sources.add(Workload.generate(shapes[i % shapes.length], 100));
+        }
+
+        pool = Executors.newFixedThreadPool(threads);
+        PrintStream nowhere = new PrintStream(OutputStream.nullOutputStream());
+        engines = ThreadLocal.withInitial(() -> new LoxEngine(new CountingSink(), nowhere));
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Benchmark
+    public int evaluateAll() throws InterruptedException, ExecutionException {
+        List<Future<Integer>> parts = new ArrayList<>(threads);
+        for (int part = 0; part < threads; part++) {
+            int from = SOURCES * part / threads;
+            int to = SOURCES * (part + 1) / threads;
+            parts.add(pool.submit(() -> {
+                LoxEngine engine = engines.get();
+                for (int i = from; i < to; i++) engine.run(sources.get(i));
+                return to - from;
+            }));
+        }
+
+        int evaluated = 0;
+        for (Future<Integer> part : parts) evaluated += part.get();
+        return evaluated;
+    }
+
+    // Throws results away, but not so obviously that the JIT can.
+    private static class CountingSink implements OutputSink {
+        int written = 0;
+
+        @Override
+        public void write(Object value) {
+            if (value != null) written++;
+        }
+
+        @Override
+        public void flush() {
+        }
+    }
+}
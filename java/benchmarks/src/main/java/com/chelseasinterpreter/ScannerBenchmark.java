@@ -0,0 +1,62 @@
+package com.chelseasinterpreter;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScannerBenchmark {
+    @Benchmark
+    public List<Token> scanTokens(Workload workload) {
+        return new Scanner(workload.source).scanTokens();
+    }
+
+    // The per-character lookups Scanner did before its ASCII tables, kept
+    // to show what the tables are buying.
+    @Benchmark
+    public void boxedCharacterLookups(Workload workload, Blackhole blackhole) {
+        String source = workload.source;
+        for (int i = 0; i < source.length(); i++) {
+            blackhole.consume(boxedSingleCharacterTokens.get(source.charAt(i)));
+        }
+    }
+
+    @Benchmark
+    public void tableCharacterLookups(Workload workload, Blackhole blackhole) {
+        String source = workload.source;
+        for (int i = 0; i < source.length(); i++) {
+            char c = source.charAt(i);
+            blackhole.consume(c < 128 ? tableSingleCharacterTokens[c] : null);
+        }
+    }
+
+    private static final Map<Character, TokenType> boxedSingleCharacterTokens = new HashMap<>();
+    private static final TokenType[] tableSingleCharacterTokens = new TokenType[128];
+
+    static {
+        String characters = "(){},.-+;*:?";
+        TokenType[] types = {
+                TokenType.LEFT_PAREN, TokenType.RIGHT_PAREN, TokenType.LEFT_BRACE, TokenType.RIGHT_BRACE,
+                TokenType.COMMA, TokenType.DOT, TokenType.MINUS, TokenType.PLUS,
+                TokenType.SEMICOLON, TokenType.STAR, TokenType.COLON, TokenType.QUESTION_MARK
+        };
+        for (int i = 0; i < types.length; i++) {
+            boxedSingleCharacterTokens.put(characters.charAt(i), types[i]);
+            tableSingleCharacterTokens[characters.charAt(i)] = types[i];
+        }
+    }
+}
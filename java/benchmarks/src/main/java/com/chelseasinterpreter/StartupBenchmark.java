@@ -0,0 +1,69 @@
+package com.chelseasinterpreter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// What a script run pays before it can start interpreting: scanning and
+// parsing the source, versus hashing it and loading the tree an earlier
+// run left in an AstCache. SingleShotTime shows the first, cold call.
+@BenchmarkMode({Mode.AverageTime, Mode.SingleShotTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+    private Path directory;
+    private AstCache cache;
+
+    @Setup(Level.Trial)
+    public void setUp(Workload workload) throws IOException {
+        directory = Files.createTempDirectory("lox-ast-cache");
+        cache = new AstCache(directory);
+        cache.store(workload.source, workload.expression);
+        if (cache.load(workload.source) == null) {
+            throw new IllegalStateException("The tree didn't make it into the cache: " + workload.shape);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException error) {
+                    throw new UncheckedIOException(error);
+                }
+            });
+        }
+    }
+
+    @Benchmark
+    public Expr coldParse(Workload workload) {
+        return new Parser(new Scanner(workload.source)).parse();
+    }
+
+    @Benchmark
+    public Expr cacheLoad(Workload workload) {
+        return cache.load(workload.source);
+    }
+}
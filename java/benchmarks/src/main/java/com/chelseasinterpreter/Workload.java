@@ -0,0 +1,115 @@
+package com.chelseasinterpreter;
+
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// A generated Lox expression, scanned and parsed ahead of time so each
+// benchmark only measures its own phase. size is the number of operands.
+@State(Scope.Benchmark)
+public class Workload {
+    public enum Shape {
+        // Parenthesized right-nested additions, nested up to MAX_DEPTH deep.
+        DEEP_NESTING,
+        // One long left-associative chain of additions.
+        FLAT_CHAIN,
+        // String concatenation.
+        STRING_HEAVY,
+        // Mixed arithmetic over fractional numbers.
+        NUMBER_HEAVY,
+        // Parenthesized halves, so the tree is wide and only log2(size) deep.
+        BALANCED,
+        // BALANCED over a handful of small subexpressions, so whole
+        // subtrees repeat.
+        REPETITIVE
+    }
+
+    // Keeps the recursive parser and evaluators off the end of the stack.
+    static final int MAX_DEPTH = 100;
+
+    @Param({"DEEP_NESTING", "FLAT_CHAIN", "STRING_HEAVY", "NUMBER_HEAVY", "BALANCED", "REPETITIVE"})
+    public Shape shape;
+
+    @Param({"100", "10000"})
+    public int size;
+
+    String source;
+    List<Token> tokens;
+    Expr expression;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        source = generate(shape, size);
+        tokens = new Scanner(source).scanTokens();
+        expression = new Parser(tokens).parse();
+        if (expression == null) {
+            throw new IllegalStateException("Generated source didn't parse: " + shape);
+        }
+    }
+
+    static String generate(Shape shape, int size) {
+        StringBuilder builder = new StringBuilder();
+
+        switch (shape) {
+            case DEEP_NESTING:
+                for (int written = 0; written < size; ) {
+                    if (written > 0) builder.append(" + ");
+                    int depth = Math.min(MAX_DEPTH, size - written);
+                    for (int i = 0; i < depth - 1; i++) builder.append("(").append(i % 10).append(" + ");
+                    builder.append("1");
+                    for (int i = 0; i < depth - 1; i++) builder.append(")");
+                    written += depth;
+                }
+                break;
+            case FLAT_CHAIN:
+                for (int i = 0; i < size; i++) {
+                    if (i > 0) builder.append(" + ");
+                    builder.append(i % 10);
+                }
+                break;
+            case STRING_HEAVY:
+                for (int i = 0; i < size; i++) {
+                    if (i > 0) builder.append(" + ");
+                    builder.append("\"lox").append((char) ('a' + i % 26)).append("\"");
+                }
+                break;
+            case NUMBER_HEAVY:
+                String[] operators = {" + ", " * ", " - ", " / "};
+                for (int i = 0; i < size; i++) {
+                    if (i > 0) builder.append(operators[i % operators.length]);
+                    builder.append(i % 9 + 1).append(".").append(i % 7 + 1).append("5");
+                }
+                break;
+            case BALANCED:
+                balanced(builder, 0, size, false);
+                break;
+            case REPETITIVE:
+                balanced(builder, 0, size, true);
+                break;
+        }
+
+        return builder.toString();
+    }
+
+    private static void balanced(StringBuilder builder, int from, int to, boolean repeat) {
+        if (to - from == 1) {
+            if (repeat) {
+                builder.append("(").append(from % 4 + 1).append(" * 2 - 1)");
+            } else {
+                builder.append(from % 9 + 1);
+            }
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+        builder.append("(");
+        balanced(builder, from, middle, repeat);
+        builder.append(middle % 2 == 0 ? " + " : " - ");
+        balanced(builder, middle, to, repeat);
+        builder.append(")");
+    }
+}
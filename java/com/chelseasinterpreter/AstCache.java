@@ -0,0 +1,287 @@
+package com.chelseasinterpreter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Parsed trees kept on disk between runs, one file per source named after
+// the SHA-256 of its text, so a script that hasn't changed since it last
+// ran skips the scanner and parser. A file holds the LineIndex the tree's
+// tokens were scanned with, a pool of numbers and one of strings (string
+// literals and lexemes both), then the nodes in post-order, each a kind
+// tag followed by what that kind needs. Reading it back is one pass over
+// a memory-mapped file with a stack of the nodes read so far, so trees
+// of any depth load without recursing. A file that can't be read, or
+// was written by another version, counts as a miss.
+public class AstCache {
+    private static final int MAGIC = 0x4C4F5841;
+    // Bump whenever the layout, or TokenType, changes, or what may be
+    // stored does. 2: no more trees from the iterative parser.
+    private static final int VERSION = 2;
+
+    private static final byte NUMBER = 0;
+    private static final byte STRING = 1;
+    private static final byte TRUE = 2;
+    private static final byte FALSE = 3;
+    private static final byte NIL = 4;
+    private static final byte GROUPING = 5;
+    private static final byte UNARY = 6;
+    private static final byte BINARY = 7;
+    private static final byte CONDITIONAL = 8;
+
+    private static final TokenType[] tokenTypes = TokenType.values();
+
+    private final Path directory;
+
+    public AstCache(Path directory) {
+        this.directory = directory;
+    }
+
+    // null when source has no tree here, or none that could be read.
+    Expr load(String source) {
+        Path path = pathFor(source);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (NoSuchFileException missing) {
+            return null;
+        } catch (IOException | RuntimeException unreadable) {
+            return null;
+        }
+    }
+
+    // Written to a temporary file first and moved into place, so a run
+    // that loads at the same time never sees half a tree. Failing to
+    // write only costs the next run its head start, so that's all it does.
+    void store(String source, Expr expression) {
+        Path path = pathFor(source);
+        try {
+            Files.createDirectories(directory);
+            Path temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+            try {
+                Files.write(temporary, write(expression));
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException error) {
+            // Next time, then.
+        }
+    }
+
+    private Path pathFor(String source) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(source.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder(hash.length * 2 + 4);
+            for (byte b : hash) {
+                name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return directory.resolve(name.append(".ast").toString());
+        } catch (NoSuchAlgorithmException error) {
+            // Every Java platform has SHA-256.
+            throw new IllegalStateException(error);
+        }
+    }
+
+    private static byte[] write(Expr expression) throws IOException {
+        // Children are pushed first to last and so come off last first;
+        // the order they were visited in, backwards, is post-order.
+        List<Expr> visited = new ArrayList<>();
+        Deque<Expr> pending = new ArrayDeque<>();
+        pending.push(expression);
+        while (!pending.isEmpty()) {
+            Expr next = pending.pop();
+            visited.add(next);
+            if (next instanceof Expr.Binary) {
+                pending.push(((Expr.Binary) next).left);
+                pending.push(((Expr.Binary) next).right);
+            } else if (next instanceof Expr.Grouping) {
+                pending.push(((Expr.Grouping) next).expression);
+            } else if (next instanceof Expr.Unary) {
+                pending.push(((Expr.Unary) next).right);
+            } else if (next instanceof Expr.Conditional) {
+                Expr.Conditional conditional = (Expr.Conditional) next;
+                pending.push(conditional.condition);
+                pending.push(conditional.thenBranch);
+                pending.push(conditional.elseBranch);
+            } else if (!(next instanceof Expr.Literal)) {
+                throw new IllegalArgumentException("Can't cache a tree with syntax errors in it.");
+            }
+        }
+
+        Pools pools = new Pools();
+        ByteArrayOutputStream nodeBytes = new ByteArrayOutputStream();
+        DataOutputStream nodes = new DataOutputStream(nodeBytes);
+        for (int i = visited.size() - 1; i >= 0; i--) {
+            Expr node = visited.get(i);
+            if (node instanceof Expr.Literal) {
+                Object value = ((Expr.Literal) node).value;
+                if (value instanceof Double) {
+                    nodes.writeByte(NUMBER);
+                    nodes.writeInt(pools.number((double) value));
+                } else if (value instanceof String) {
+                    nodes.writeByte(STRING);
+                    nodes.writeInt(pools.string((String) value));
+                } else if (value == null) {
+                    nodes.writeByte(NIL);
+                } else {
+                    nodes.writeByte((boolean) value ? TRUE : FALSE);
+                }
+            } else if (node instanceof Expr.Binary) {
+                nodes.writeByte(BINARY);
+                writeToken(nodes, ((Expr.Binary) node).operator, pools);
+            } else if (node instanceof Expr.Unary) {
+                nodes.writeByte(UNARY);
+                writeToken(nodes, ((Expr.Unary) node).operator, pools);
+            } else {
+                nodes.writeByte(node instanceof Expr.Grouping ? GROUPING : CONDITIONAL);
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(nodeBytes.size() + 1024);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+
+        LineIndex lines = pools.lines;
+        int lineCount = lines == null ? 0 : lines.lineCount();
+        out.writeInt(lineCount);
+        for (int line = 1; line <= lineCount; line++) out.writeInt(lines.lineStart(line));
+
+        out.writeInt(pools.numbers.size());
+        for (double number : pools.numbers) out.writeDouble(number);
+
+        out.writeInt(pools.strings.size());
+        for (String string : pools.strings) {
+            // As chars rather than UTF-8, so nothing a Java String can
+            // hold gets lost on the way.
+            out.writeInt(string.length());
+            out.writeChars(string);
+        }
+
+        out.writeInt(visited.size());
+        nodeBytes.writeTo(out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeToken(DataOutputStream out, Token token, Pools pools) throws IOException {
+        if (pools.lines == null) pools.lines = token.lineIndex();
+        out.writeByte(token.type.ordinal());
+        out.writeInt(pools.string(token.lexeme));
+        out.writeInt(token.line);
+        out.writeInt(token.start);
+        out.writeInt(token.end);
+    }
+
+    // What the nodes refer to by index. Every token in one tree was
+    // scanned together, so they all share the first one's LineIndex.
+    private static final class Pools {
+        final List<Double> numbers = new ArrayList<>();
+        final List<String> strings = new ArrayList<>();
+        private final Map<Double, Integer> numberIndexes = new HashMap<>();
+        private final Map<String, Integer> stringIndexes = new HashMap<>();
+        LineIndex lines = null;
+
+        int number(double value) {
+            return numberIndexes.computeIfAbsent(value, added -> {
+                numbers.add(added);
+                return numbers.size() - 1;
+            });
+        }
+
+        int string(String value) {
+            return stringIndexes.computeIfAbsent(value, added -> {
+                strings.add(added);
+                return strings.size() - 1;
+            });
+        }
+    }
+
+    private static Expr read(ByteBuffer in) {
+        if (in.getInt() != MAGIC || in.getInt() != VERSION) return null;
+
+        LineIndex lines = new LineIndex();
+        int lineCount = in.getInt();
+        for (int line = 1; line <= lineCount; line++) {
+            // Line 1 starts at 0 in every LineIndex.
+            int start = in.getInt();
+            if (line > 1) lines.addLine(start);
+        }
+
+        double[] numbers = new double[in.getInt()];
+        for (int i = 0; i < numbers.length; i++) numbers[i] = in.getDouble();
+
+        String[] strings = new String[in.getInt()];
+        for (int i = 0; i < strings.length; i++) {
+            char[] chars = new char[in.getInt()];
+            for (int c = 0; c < chars.length; c++) chars[c] = in.getChar();
+            strings[i] = new String(chars);
+        }
+
+        int nodeCount = in.getInt();
+        Expr[] stack = new Expr[16];
+        int size = 0;
+        for (int i = 0; i < nodeCount; i++) {
+            Expr node;
+            byte kind = in.get();
+            switch (kind) {
+                case NUMBER: node = new Expr.Literal(numbers[in.getInt()]); break;
+                case STRING: node = new Expr.Literal(strings[in.getInt()]); break;
+                case TRUE: node = new Expr.Literal(true); break;
+                case FALSE: node = new Expr.Literal(false); break;
+                case NIL: node = new Expr.Literal(null); break;
+                case GROUPING:
+                    node = new Expr.Grouping(stack[--size]);
+                    break;
+                case UNARY:
+                    node = new Expr.Unary(readToken(in, strings, lines), stack[--size]);
+                    break;
+                case BINARY: {
+                    Token operator = readToken(in, strings, lines);
+                    Expr right = stack[--size];
+                    node = new Expr.Binary(stack[--size], operator, right);
+                    break;
+                }
+                case CONDITIONAL: {
+                    Expr elseBranch = stack[--size];
+                    Expr thenBranch = stack[--size];
+                    node = new Expr.Conditional(stack[--size], thenBranch, elseBranch);
+                    break;
+                }
+                default:
+                    return null;
+            }
+
+            if (size == stack.length) stack = Arrays.copyOf(stack, size * 2);
+            stack[size++] = node;
+        }
+
+        return size == 1 ? stack[0] : null;
+    }
+
+    private static Token readToken(ByteBuffer in, String[] strings, LineIndex lines) {
+        TokenType type = tokenTypes[in.get()];
+        String lexeme = strings[in.getInt()];
+        int line = in.getInt();
+        int start = in.getInt();
+        int end = in.getInt();
+        return new Token(type, lexeme, null, line, start, end, lines);
+    }
+}
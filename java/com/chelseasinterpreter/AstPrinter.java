@@ -1,48 +1,70 @@
 package com.chelseasinterpreter;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+
 // Creates an unambiguous, if ugly, string representation of AST nodes.
-class AstPrinter implements Expr.Visitor<String> {
+// Writes into one StringBuilder from a stack of its own rather than by
+// recursing, so it copes with trees of any depth, in time linear in
+// their size.
+class AstPrinter {
     String print(Expr expr) {
-        return expr.accept(this);
-    }
-
-    @Override
-    public String visitBinaryExpr(Expr.Binary expr) {
-        return parenthesize(expr.operator.lexeme, expr.left, expr.right);
-    }
-
-    @Override
-    public String visitConditionalExpr(Expr.Conditional expr) {
-        return parenthesize("?", expr.thenBranch, expr.elseBranch);
-    }
+        StringBuilder builder = new StringBuilder();
 
-    @Override
-    public String visitGroupingExpr(Expr.Grouping expr) {
-        return parenthesize("group", expr.expression);
-    }
+        // Each entry is either a node still to print or text to append.
+        Deque<Object> pending = new ArrayDeque<>();
+        pending.push(expr);
+        while (!pending.isEmpty()) {
+            Object next = pending.pop();
+            if (next instanceof String) {
+                builder.append((String) next);
+            } else {
+                print((Expr) next, builder, pending);
+            }
+        }
 
-    @Override
-    public String visitLiteralExpr(Expr.Literal expr) {
-        if (expr.value == null) return "nil";
-        return expr.value.toString();
+        return builder.toString();
     }
 
-    @Override
-    public String visitUnaryExpr(Expr.Unary expr) {
-        return parenthesize(expr.operator.lexeme, expr.right);
+    private void print(Expr expr, StringBuilder builder, Deque<Object> pending) {
+        switch (expr.kind) {
+            case Expr.LITERAL: {
+                Object value = ((Expr.Literal) expr).value;
+                builder.append(value == null ? "nil" : value.toString());
+                break;
+            }
+            case Expr.BINARY: {
+                Expr.Binary binary = (Expr.Binary) expr;
+                parenthesize(builder, pending, binary.operator.lexeme, binary.left, binary.right);
+                break;
+            }
+            case Expr.CONDITIONAL: {
+                Expr.Conditional conditional = (Expr.Conditional) expr;
+                parenthesize(builder, pending, "?", conditional.thenBranch, conditional.elseBranch);
+                break;
+            }
+            case Expr.GROUPING:
+                parenthesize(builder, pending, "group", ((Expr.Grouping) expr).expression);
+                break;
+            case Expr.ERROR:
+                builder.append("(error)");
+                break;
+            default: {
+                Expr.Unary unary = (Expr.Unary) expr;
+                parenthesize(builder, pending, unary.operator.lexeme, unary.right);
+            }
+        }
     }
 
-    private String parenthesize(String name, Expr... exprs) {
-        StringBuilder builder = new StringBuilder();
-
+    // Opens the parentheses now and leaves the operands and the closing
+    // parenthesis on the stack, last first.
+    private void parenthesize(StringBuilder builder, Deque<Object> pending, String name, Expr... exprs) {
         builder.append("(").append(name);
-        for (Expr expr : exprs) {
-            builder.append(" ");
-            builder.append(expr.accept(this));
-        }
-        builder.append(")");
 
-        return builder.toString();
+        pending.push(")");
+        for (int i = exprs.length - 1; i >= 0; i--) {
+            pending.push(exprs[i]);
+            pending.push(" ");
+        }
     }
-
 }
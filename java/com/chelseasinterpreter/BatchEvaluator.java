@@ -0,0 +1,109 @@
+package com.chelseasinterpreter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+// Evaluates many small expressions in one call, for embedders with lots
+// of one-line rules to check. One Scanner, Parser and Interpreter serve
+// the whole batch, and errors come back with each item's result instead
+// of going to stderr and Lox's hadError/hadRuntimeError flags.
+//
+// Keeps per-batch state, so a BatchEvaluator must only be used by one
+// thread at a time.
+public class BatchEvaluator {
+    // The syntax errors of the item being evaluated.
+    private final List<String> errors = new ArrayList<>();
+    private final ErrorReporter reporter = new ErrorReporter() {
+        @Override
+        public void error(int line, int column, String message) {
+            errors.add(Lox.errorMessage(line, column, "", message));
+        }
+
+        @Override
+        public void error(Token token, String message) {
+            errors.add(Lox.errorMessage(token, message));
+        }
+
+        @Override
+        public void runtimeError(RuntimeError error) {
+            errors.add(Lox.runtimeErrorMessage(error));
+        }
+    };
+
+    private final Scanner scanner = new Scanner("", reporter);
+    private final Parser parser = new Parser(scanner, reporter);
+    private final Interpreter interpreter = new Interpreter(new MemoryOutputSink(), reporter);
+    private final ExpressionCache cache;
+
+    public BatchEvaluator() {
+        this(null);
+    }
+
+    // Sources found in the cache skip scanning and parsing; the cache may
+    // be shared with other evaluators and engines.
+    public BatchEvaluator(ExpressionCache cache) {
+        this.cache = cache;
+    }
+
+    public Result[] evaluate(Collection<? extends CharSequence> sources) {
+        Result[] results = new Result[sources.size()];
+        int index = 0;
+        for (CharSequence source : sources) {
+            results[index++] = evaluate(source);
+        }
+        return results;
+    }
+
+    public Result evaluate(CharSequence source) {
+        String cacheKey = cache == null ? null : source.toString();
+        Expr expression = cacheKey == null ? null : cache.get(cacheKey);
+
+        if (expression == null) {
+            errors.clear();
+            scanner.reset(source);
+            parser.reset();
+
+            // The parser reports why whenever it comes up with nothing,
+            // nesting too deep for it included.
+            expression = parser.parse();
+            if (!errors.isEmpty() || expression == null) return Result.failure(String.join("\n", errors));
+            if (cacheKey != null) cache.put(cacheKey, expression);
+        }
+
+        try {
+            return Result.success(interpreter.evaluate(expression));
+        } catch (RuntimeError error) {
+            return Result.failure(Lox.runtimeErrorMessage(error));
+        }
+    }
+
+    // Either the value an expression came up with or the errors that
+    // stopped it, formatted the way Lox prints them.
+    public static final class Result {
+        public final Object value;
+        public final String error;
+
+        private Result(Object value, String error) {
+            this.value = value;
+            this.error = error;
+        }
+
+        static Result success(Object value) {
+            return new Result(value, null);
+        }
+
+        static Result failure(String error) {
+            return new Result(null, error);
+        }
+
+        public boolean succeeded() {
+            return error == null;
+        }
+
+        @Override
+        public String toString() {
+            return succeeded() ? Interpreter.stringify(value) : error;
+        }
+    }
+}
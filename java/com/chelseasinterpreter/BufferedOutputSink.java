@@ -0,0 +1,56 @@
+package com.chelseasinterpreter;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+// Collects printed values in one StringBuilder and hands them to the
+// Writer a batch at a time, instead of a println (and often a flush) per
+// value. Still locks per value, since engines on several threads may
+// share standard output.
+class BufferedOutputSink implements OutputSink {
+    static final BufferedOutputSink STANDARD_OUTPUT = new BufferedOutputSink(
+            new OutputStreamWriter(System.out, Charset.defaultCharset()));
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(STANDARD_OUTPUT::flush));
+    }
+
+    private static final int BATCH_SIZE = 8192;
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final Writer writer;
+    private final StringBuilder buffer = new StringBuilder(BATCH_SIZE + 64);
+
+    BufferedOutputSink(Writer writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public synchronized void write(Object value) {
+        Interpreter.stringify(value, buffer);
+        buffer.append(LINE_SEPARATOR);
+        if (buffer.length() >= BATCH_SIZE) drain();
+    }
+
+    @Override
+    public synchronized void flush() {
+        drain();
+        try {
+            writer.flush();
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+    }
+
+    private void drain() {
+        try {
+            writer.append(buffer);
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+        buffer.setLength(0);
+    }
+}
@@ -0,0 +1,137 @@
+package com.chelseasinterpreter;
+
+import static com.chelseasinterpreter.Chunk.*;
+
+// Flattens an expression tree into a Chunk. Operands are compiled left to
+// right before their operator, the same order the Interpreter evaluates
+// them in, so the first error raised is the same one.
+class BytecodeCompiler implements Expr.Visitor<Void> {
+    private Chunk chunk;
+    private int stackDepth;
+
+    Chunk compile(Expr expr) {
+        chunk = new Chunk();
+        stackDepth = 0;
+
+        expr.accept(this);
+        chunk.write(OP_RETURN);
+        return chunk;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        expr.left.accept(this);
+        expr.right.accept(this);
+
+        switch (expr.operator.type) {
+            case GREATER: emitBinary(OP_GREATER, expr.operator); break;
+            case GREATER_EQUAL: emitBinary(OP_GREATER_EQUAL, expr.operator); break;
+            case LESS: emitBinary(OP_LESS, expr.operator); break;
+            case LESS_EQUAL: emitBinary(OP_LESS_EQUAL, expr.operator); break;
+            case BANG_EQUAL: emitBinary(OP_NOT_EQUAL, expr.operator); break;
+            case EQUAL_EQUAL: emitBinary(OP_EQUAL, expr.operator); break;
+            case MINUS: emitBinary(OP_SUBTRACT, expr.operator); break;
+            case PLUS: emitBinary(OP_ADD, expr.operator); break;
+            case SLASH: emitBinary(OP_DIVIDE, expr.operator); break;
+            case STAR: emitBinary(OP_MULTIPLY, expr.operator); break;
+            default:
+                // The interpreter evaluates both sides of anything else,
+                // ',' included, and comes up with nil.
+                emitBinary(OP_COMMA, expr.operator);
+                break;
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        expr.expression.accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        Object value = expr.value;
+
+        if (value == null) {
+            chunk.write(OP_NIL);
+        } else if (Boolean.TRUE.equals(value)) {
+            chunk.write(OP_TRUE);
+        } else if (Boolean.FALSE.equals(value)) {
+            chunk.write(OP_FALSE);
+        } else if (value instanceof Double) {
+            chunk.write(OP_NUMBER);
+            chunk.write(chunk.addNumber((double) value));
+        } else {
+            chunk.write(OP_CONSTANT);
+            chunk.write(chunk.addConstant(value));
+        }
+        push();
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        expr.right.accept(this);
+
+        switch (expr.operator.type) {
+            case MINUS:
+                chunk.write(OP_NEGATE, expr.operator);
+                break;
+            case BANG:
+                chunk.write(OP_NOT, expr.operator);
+                break;
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitConditionalExpr(Expr.Conditional expr) {
+        expr.condition.accept(this);
+        int elseJump = emitJump(OP_JUMP_IF_FALSE);
+        pop();
+
+        expr.thenBranch.accept(this);
+        int endJump = emitJump(OP_JUMP);
+
+        // Only one branch leaves a value on the stack.
+        pop();
+        patchJump(elseJump);
+        expr.elseBranch.accept(this);
+        patchJump(endJump);
+        return null;
+    }
+
+    @Override
+    public Void visitErrorExpr(Expr.Error expr) {
+        chunk.write(OP_ERROR, expr.token);
+        chunk.write(chunk.addConstant(expr.message));
+        // It never gets to leave a value, but its parent expects one.
+        push();
+        return null;
+    }
+
+    private void emitBinary(int instruction, Token operator) {
+        chunk.write(instruction, operator);
+        pop();
+    }
+
+    private int emitJump(int instruction) {
+        chunk.write(instruction);
+        chunk.write(-1);
+        return chunk.count - 1;
+    }
+
+    private void patchJump(int operandIndex) {
+        chunk.code[operandIndex] = chunk.count;
+    }
+
+    private void push() {
+        stackDepth++;
+        chunk.maxStackDepth = Math.max(chunk.maxStackDepth, stackDepth);
+    }
+
+    private void pop() {
+        stackDepth--;
+    }
+}
@@ -0,0 +1,79 @@
+package com.chelseasinterpreter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// A compiled expression: a flat array of instructions for the
+// VirtualMachine, plus the constants they refer to. Number constants are
+// kept unboxed in their own pool. Instructions that can fail remember the
+// Token they came from, so runtime errors point at the same place the
+// tree-walking Interpreter would.
+class Chunk {
+    // Push numbers[operand].
+    static final int OP_NUMBER = 0;
+    // Push constants[operand].
+    static final int OP_CONSTANT = 1;
+    static final int OP_NIL = 2;
+    static final int OP_TRUE = 3;
+    static final int OP_FALSE = 4;
+    static final int OP_ADD = 5;
+    static final int OP_SUBTRACT = 6;
+    static final int OP_MULTIPLY = 7;
+    static final int OP_DIVIDE = 8;
+    static final int OP_GREATER = 9;
+    static final int OP_GREATER_EQUAL = 10;
+    static final int OP_LESS = 11;
+    static final int OP_LESS_EQUAL = 12;
+    static final int OP_EQUAL = 13;
+    static final int OP_NOT_EQUAL = 14;
+    static final int OP_NEGATE = 15;
+    static final int OP_NOT = 16;
+    // Pops two values and pushes nil, like the interpreter's ',' does.
+    static final int OP_COMMA = 17;
+    // Jump to the operand.
+    static final int OP_JUMP = 18;
+    // Pop the condition and jump to the operand if it is falsey.
+    static final int OP_JUMP_IF_FALSE = 19;
+    static final int OP_RETURN = 20;
+    // Raise a RuntimeError with the message constants[operand], where a
+    // tree parsed with recovery on had a syntax error.
+    static final int OP_ERROR = 21;
+
+    int[] code = new int[16];
+    Token[] tokens = new Token[16];
+    int count = 0;
+
+    double[] numbers = new double[8];
+    int numberCount = 0;
+    final List<Object> constants = new ArrayList<>();
+
+    int maxStackDepth = 0;
+
+    void write(int instruction) {
+        write(instruction, null);
+    }
+
+    void write(int instruction, Token token) {
+        if (count == code.length) {
+            code = Arrays.copyOf(code, count * 2);
+            tokens = Arrays.copyOf(tokens, count * 2);
+        }
+        code[count] = instruction;
+        tokens[count] = token;
+        count++;
+    }
+
+    int addNumber(double value) {
+        if (numberCount == numbers.length) {
+            numbers = Arrays.copyOf(numbers, numberCount * 2);
+        }
+        numbers[numberCount] = value;
+        return numberCount++;
+    }
+
+    int addConstant(Object value) {
+        constants.add(value);
+        return constants.size() - 1;
+    }
+}
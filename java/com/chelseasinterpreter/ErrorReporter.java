@@ -0,0 +1,34 @@
+package com.chelseasinterpreter;
+
+// Where the scanner, parser and interpreters send the errors they find.
+// A LoxEngine prints them and remembers that they happened; an embedder
+// can collect them per source instead.
+interface ErrorReporter {
+    void error(int line, int column, String message);
+
+    void error(Token token, String message);
+
+    void runtimeError(RuntimeError error);
+
+    // Prints to stderr and keeps no state, so anything can share it.
+    static ErrorReporter standardError() {
+        return STANDARD_ERROR;
+    }
+
+    ErrorReporter STANDARD_ERROR = new ErrorReporter() {
+        @Override
+        public void error(int line, int column, String message) {
+            System.err.println(Lox.errorMessage(line, column, "", message));
+        }
+
+        @Override
+        public void error(Token token, String message) {
+            System.err.println(Lox.errorMessage(token, message));
+        }
+
+        @Override
+        public void runtimeError(RuntimeError error) {
+            System.err.println(Lox.runtimeErrorMessage(error));
+        }
+    };
+}
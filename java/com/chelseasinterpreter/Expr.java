@@ -1,8 +1,18 @@
 package com.chelseasinterpreter;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
+// Generated by com.tools.GenerateAst.
 abstract class Expr {
+    static final int BINARY = 0;
+    static final int GROUPING = 1;
+    static final int LITERAL = 2;
+    static final int UNARY = 3;
+    static final int CONDITIONAL = 4;
+    static final int ERROR = 5;
+
     interface Visitor<R> {
         R visitBinaryExpr(Binary expr);
 
@@ -13,10 +23,87 @@ abstract class Expr {
         R visitUnaryExpr(Unary expr);
 
         R visitConditionalExpr(Conditional expr);
+
+        R visitErrorExpr(Error expr);
+    }
+
+    // For visits that come up with a primitive, so it isn't boxed.
+    interface DoubleVisitor {
+        double visitBinaryExpr(Binary expr);
+
+        double visitGroupingExpr(Grouping expr);
+
+        double visitLiteralExpr(Literal expr);
+
+        double visitUnaryExpr(Unary expr);
+
+        double visitConditionalExpr(Conditional expr);
+
+        double visitErrorExpr(Error expr);
+    }
+
+    interface BooleanVisitor {
+        boolean visitBinaryExpr(Binary expr);
+
+        boolean visitGroupingExpr(Grouping expr);
+
+        boolean visitLiteralExpr(Literal expr);
+
+        boolean visitUnaryExpr(Unary expr);
+
+        boolean visitConditionalExpr(Conditional expr);
+
+        boolean visitErrorExpr(Error expr);
+    }
+
+    // Which of the classes below a node is, to switch on.
+    final int kind;
+    private int hash = 0;
+
+    // Only the classes below can extend Expr.
+    private Expr(int kind) {
+        this.kind = kind;
+    }
+
+    static <R> R dispatch(Expr expr, Visitor<R> visitor) {
+        switch (expr.kind) {
+            case BINARY: return visitor.visitBinaryExpr((Binary) expr);
+            case GROUPING: return visitor.visitGroupingExpr((Grouping) expr);
+            case LITERAL: return visitor.visitLiteralExpr((Literal) expr);
+            case UNARY: return visitor.visitUnaryExpr((Unary) expr);
+            case CONDITIONAL: return visitor.visitConditionalExpr((Conditional) expr);
+            case ERROR: return visitor.visitErrorExpr((Error) expr);
+            default: throw new IllegalArgumentException("No such kind: " + expr.kind);
+        }
     }
 
-    static class Binary extends Expr {
+    static double dispatch(Expr expr, DoubleVisitor visitor) {
+        switch (expr.kind) {
+            case BINARY: return visitor.visitBinaryExpr((Binary) expr);
+            case GROUPING: return visitor.visitGroupingExpr((Grouping) expr);
+            case LITERAL: return visitor.visitLiteralExpr((Literal) expr);
+            case UNARY: return visitor.visitUnaryExpr((Unary) expr);
+            case CONDITIONAL: return visitor.visitConditionalExpr((Conditional) expr);
+            case ERROR: return visitor.visitErrorExpr((Error) expr);
+            default: throw new IllegalArgumentException("No such kind: " + expr.kind);
+        }
+    }
+
+    static boolean dispatch(Expr expr, BooleanVisitor visitor) {
+        switch (expr.kind) {
+            case BINARY: return visitor.visitBinaryExpr((Binary) expr);
+            case GROUPING: return visitor.visitGroupingExpr((Grouping) expr);
+            case LITERAL: return visitor.visitLiteralExpr((Literal) expr);
+            case UNARY: return visitor.visitUnaryExpr((Unary) expr);
+            case CONDITIONAL: return visitor.visitConditionalExpr((Conditional) expr);
+            case ERROR: return visitor.visitErrorExpr((Error) expr);
+            default: throw new IllegalArgumentException("No such kind: " + expr.kind);
+        }
+    }
+
+    static final class Binary extends Expr {
         Binary(Expr left, Token operator, Expr right) {
+            super(BINARY);
             this.left = left;
             this.operator = operator;
             this.right = right;
@@ -31,17 +118,48 @@ abstract class Expr {
         }
 
         @Override
-        public String toString() {
-            StringBuilder builder = new StringBuilder("Expr.Binary\n");
-            builder.append("left: " + this.left + "\n");
-            builder.append("operator: " + this.operator + "\n");
-            builder.append("right: " + this.right + "\n");
-            return builder.toString();
+        int childCount() {
+            return 2;
+        }
+
+        @Override
+        Expr child(int index) {
+            switch (index) {
+                case 0: return left;
+                case 1: return right;
+                default: throw new IndexOutOfBoundsException(index);
+            }
+        }
+
+        @Override
+        boolean sameFields(Expr other) {
+            Binary that = (Binary) other;
+            return sameToken(operator, that.operator);
+        }
+
+        @Override
+        int fieldsHash() {
+            return tokenHash(operator);
+        }
+
+        @Override
+        void describe(StringBuilder builder, List<Object> pending) {
+            builder.append("Expr.Binary\n");
+            pending.add("\n");
+            pending.add(right == null ? "null" : right);
+            pending.add("right: ");
+            pending.add("\n");
+            pending.add(String.valueOf(operator));
+            pending.add("operator: ");
+            pending.add("\n");
+            pending.add(left == null ? "null" : left);
+            pending.add("left: ");
         }
     }
 
-    static class Grouping extends Expr {
+    static final class Grouping extends Expr {
         Grouping(Expr expression) {
+            super(GROUPING);
             this.expression = expression;
         }
 
@@ -52,15 +170,40 @@ abstract class Expr {
         }
 
         @Override
-        public String toString() {
-            StringBuilder builder = new StringBuilder("Expr.Grouping\n");
-            builder.append("expression: " + this.expression + "\n");
-            return builder.toString();
+        int childCount() {
+            return 1;
+        }
+
+        @Override
+        Expr child(int index) {
+            switch (index) {
+                case 0: return expression;
+                default: throw new IndexOutOfBoundsException(index);
+            }
+        }
+
+        @Override
+        boolean sameFields(Expr other) {
+            return true;
+        }
+
+        @Override
+        int fieldsHash() {
+            return 0;
+        }
+
+        @Override
+        void describe(StringBuilder builder, List<Object> pending) {
+            builder.append("Expr.Grouping\n");
+            pending.add("\n");
+            pending.add(expression == null ? "null" : expression);
+            pending.add("expression: ");
         }
     }
 
-    static class Literal extends Expr {
+    static final class Literal extends Expr {
         Literal(Object value) {
+            super(LITERAL);
             this.value = value;
         }
 
@@ -71,15 +214,38 @@ abstract class Expr {
         }
 
         @Override
-        public String toString() {
-            StringBuilder builder = new StringBuilder("Expr.Literal\n");
-            builder.append("value: " + this.value + "\n");
-            return builder.toString();
+        int childCount() {
+            return 0;
+        }
+
+        @Override
+        Expr child(int index) {
+            throw new IndexOutOfBoundsException(index);
+        }
+
+        @Override
+        boolean sameFields(Expr other) {
+            Literal that = (Literal) other;
+            return Objects.equals(value, that.value);
+        }
+
+        @Override
+        int fieldsHash() {
+            return Objects.hashCode(value);
+        }
+
+        @Override
+        void describe(StringBuilder builder, List<Object> pending) {
+            builder.append("Expr.Literal\n");
+            pending.add("\n");
+            pending.add(String.valueOf(value));
+            pending.add("value: ");
         }
     }
 
-    static class Unary extends Expr {
+    static final class Unary extends Expr {
         Unary(Token operator, Expr right) {
+            super(UNARY);
             this.operator = operator;
             this.right = right;
         }
@@ -92,16 +258,44 @@ abstract class Expr {
         }
 
         @Override
-        public String toString() {
-            StringBuilder builder = new StringBuilder("Expr.Unary\n");
-            builder.append("operator: " + this.operator + "\n");
-            builder.append("right: " + this.right + "\n");
-            return builder.toString();
+        int childCount() {
+            return 1;
+        }
+
+        @Override
+        Expr child(int index) {
+            switch (index) {
+                case 0: return right;
+                default: throw new IndexOutOfBoundsException(index);
+            }
+        }
+
+        @Override
+        boolean sameFields(Expr other) {
+            Unary that = (Unary) other;
+            return sameToken(operator, that.operator);
+        }
+
+        @Override
+        int fieldsHash() {
+            return tokenHash(operator);
+        }
+
+        @Override
+        void describe(StringBuilder builder, List<Object> pending) {
+            builder.append("Expr.Unary\n");
+            pending.add("\n");
+            pending.add(right == null ? "null" : right);
+            pending.add("right: ");
+            pending.add("\n");
+            pending.add(String.valueOf(operator));
+            pending.add("operator: ");
         }
     }
 
-    static class Conditional extends Expr {
+    static final class Conditional extends Expr {
         Conditional(Expr condition, Expr thenBranch, Expr elseBranch) {
+            super(CONDITIONAL);
             this.condition = condition;
             this.thenBranch = thenBranch;
             this.elseBranch = elseBranch;
@@ -116,14 +310,187 @@ abstract class Expr {
         }
 
         @Override
-        public String toString() {
-            StringBuilder builder = new StringBuilder("Expr.Conditional\n");
-            builder.append("condition: " + this.condition + "\n");
-            builder.append("thenBranch: " + this.thenBranch + "\n");
-            builder.append("elseBranch: " + this.elseBranch + "\n");
-            return builder.toString();
+        int childCount() {
+            return 3;
+        }
+
+        @Override
+        Expr child(int index) {
+            switch (index) {
+                case 0: return condition;
+                case 1: return thenBranch;
+                case 2: return elseBranch;
+                default: throw new IndexOutOfBoundsException(index);
+            }
+        }
+
+        @Override
+        boolean sameFields(Expr other) {
+            return true;
+        }
+
+        @Override
+        int fieldsHash() {
+            return 0;
+        }
+
+        @Override
+        void describe(StringBuilder builder, List<Object> pending) {
+            builder.append("Expr.Conditional\n");
+            pending.add("\n");
+            pending.add(elseBranch == null ? "null" : elseBranch);
+            pending.add("elseBranch: ");
+            pending.add("\n");
+            pending.add(thenBranch == null ? "null" : thenBranch);
+            pending.add("thenBranch: ");
+            pending.add("\n");
+            pending.add(condition == null ? "null" : condition);
+            pending.add("condition: ");
+        }
+    }
+
+    static final class Error extends Expr {
+        Error(Token token, String message) {
+            super(ERROR);
+            this.token = token;
+            this.message = message;
+        }
+
+        final Token token;
+        final String message;
+
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitErrorExpr(this);
+        }
+
+        @Override
+        int childCount() {
+            return 0;
+        }
+
+        @Override
+        Expr child(int index) {
+            throw new IndexOutOfBoundsException(index);
+        }
+
+        @Override
+        boolean sameFields(Expr other) {
+            Error that = (Error) other;
+            return sameToken(token, that.token) &&
+                    Objects.equals(message, that.message);
+        }
+
+        @Override
+        int fieldsHash() {
+            return 31 * tokenHash(token) + Objects.hashCode(message);
+        }
+
+        @Override
+        void describe(StringBuilder builder, List<Object> pending) {
+            builder.append("Expr.Error\n");
+            pending.add("\n");
+            pending.add(String.valueOf(message));
+            pending.add("message: ");
+            pending.add("\n");
+            pending.add(String.valueOf(token));
+            pending.add("token: ");
         }
     }
 
     abstract <R> R accept(Visitor<R> visitor);
+
+    // The Expr fields, in order.
+    abstract int childCount();
+
+    abstract Expr child(int index);
+
+    // The other fields, for a node of the same kind.
+    abstract boolean sameFields(Expr other);
+
+    abstract int fieldsHash();
+
+    // Appends the node's first line and leaves its fields on pending, last first.
+    abstract void describe(StringBuilder builder, List<Object> pending);
+
+    // Same kinds of node with the same fields all the way down. Tokens
+    // match on type and lexeme, wherever they were scanned.
+    @Override
+    public final boolean equals(Object object) {
+        if (!(object instanceof Expr)) return false;
+
+        // Pairs of nodes still to compare.
+        List<Expr> pending = new ArrayList<>();
+        pending.add(this);
+        pending.add((Expr) object);
+        while (!pending.isEmpty()) {
+            Expr right = pending.remove(pending.size() - 1);
+            Expr left = pending.remove(pending.size() - 1);
+            if (left == right) continue;
+            if (left == null || right == null || left.kind != right.kind) return false;
+            if (left.hash != 0 && right.hash != 0 && left.hash != right.hash) return false;
+            if (!left.sameFields(right)) return false;
+
+            for (int i = 0; i < left.childCount(); i++) {
+                pending.add(left.child(i));
+                pending.add(right.child(i));
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public final int hashCode() {
+        if (hash != 0) return hash;
+
+        // A node comes off once its children all have their hashes.
+        List<Expr> pending = new ArrayList<>();
+        pending.add(this);
+        while (!pending.isEmpty()) {
+            Expr next = pending.get(pending.size() - 1);
+            int waiting = pending.size();
+            for (int i = 0; i < next.childCount(); i++) {
+                Expr child = next.child(i);
+                if (child != null && child.hash == 0) pending.add(child);
+            }
+            if (pending.size() > waiting) continue;
+
+            pending.remove(pending.size() - 1);
+            int hash = 31 * next.kind + next.fieldsHash();
+            for (int i = 0; i < next.childCount(); i++) {
+                Expr child = next.child(i);
+                hash = 31 * hash + (child == null ? 0 : child.hash);
+            }
+            // 0 means not worked out yet.
+            next.hash = hash == 0 ? 1 : hash;
+        }
+        return hash;
+    }
+
+    static boolean sameToken(Token left, Token right) {
+        if (left == null || right == null) return left == right;
+        return left.type == right.type && Objects.equals(left.lexeme, right.lexeme);
+    }
+
+    static int tokenHash(Token token) {
+        if (token == null) return 0;
+        return 31 * token.type.ordinal() + Objects.hashCode(token.lexeme);
+    }
+
+    @Override
+    public final String toString() {
+        StringBuilder builder = new StringBuilder();
+
+        // Nodes still to describe and text to append, last first.
+        List<Object> pending = new ArrayList<>();
+        pending.add(this);
+        while (!pending.isEmpty()) {
+            Object next = pending.remove(pending.size() - 1);
+            if (next instanceof Expr) {
+                ((Expr) next).describe(builder, pending);
+            } else {
+                builder.append(next);
+            }
+        }
+        return builder.toString();
+    }
 }
@@ -0,0 +1,84 @@
+package com.chelseasinterpreter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Parsed expressions by source text, so a source that keeps coming back
+// skips the scanner and parser. Holds at most capacity entries and drops
+// the least recently used one to make room. Expr trees are never changed
+// after parsing, so engines on any number of threads can share one cache
+// and the trees in it. Sources with syntax errors are never cached, so
+// their errors are reported every time.
+public class ExpressionCache {
+    private final int capacity;
+    private final LinkedHashMap<String, Expr> entries;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public ExpressionCache(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be at least 1.");
+
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<String, Expr>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Expr> eldest) {
+                if (size() <= ExpressionCache.this.capacity) return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    // null, and a miss, when the source isn't cached.
+    synchronized Expr get(String source) {
+        Expr expression = entries.get(source);
+        if (expression == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return expression;
+    }
+
+    // Parsing happens outside the lock, so two threads that miss on the
+    // same source both parse it and the second put wins. Either tree is
+    // as good as the other.
+    synchronized void put(String source, Expr expression) {
+        entries.put(source, expression);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "{\"size\":" + entries.size() +
+                ",\"capacity\":" + capacity +
+                ",\"hits\":" + hits +
+                ",\"misses\":" + misses +
+                ",\"evictions\":" + evictions + "}";
+    }
+}
@@ -0,0 +1,86 @@
+package com.chelseasinterpreter;
+
+import java.util.Arrays;
+
+// Text that is edited in place: the characters sit either side of a gap
+// that is moved to wherever the next edit is. An edit costs as much as
+// the distance the gap moves plus the characters inserted, so a run of
+// edits close together doesn't copy the rest of the text each time.
+class GapBuffer implements CharSequence {
+    private char[] chars;
+    private int gapStart;
+    private int gapEnd;
+
+    GapBuffer(CharSequence text) {
+        chars = new char[Math.max(16, text.length() * 2)];
+        for (int i = 0; i < text.length(); i++) chars[i] = text.charAt(i);
+        gapStart = text.length();
+        gapEnd = chars.length;
+    }
+
+    // Like StringBuilder.replace.
+    void replace(int start, int end, CharSequence replacement) {
+        moveGap(end);
+        gapStart = start;
+
+        int length = replacement.length();
+        if (gapEnd - gapStart < length) grow(length);
+        for (int i = 0; i < length; i++) chars[gapStart++] = replacement.charAt(i);
+    }
+
+    @Override
+    public int length() {
+        return chars.length - (gapEnd - gapStart);
+    }
+
+    @Override
+    public char charAt(int index) {
+        return index < gapStart ? chars[index] : chars[index + gapEnd - gapStart];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new String(copy(start, end));
+    }
+
+    @Override
+    public String toString() {
+        return new String(copy(0, length()));
+    }
+
+    private char[] copy(int start, int end) {
+        if (start < 0 || start > end || end > length()) {
+            throw new IndexOutOfBoundsException(start + ".." + end + " is outside a text of length " + length() + ".");
+        }
+
+        char[] copy = new char[end - start];
+        int before = Math.max(0, Math.min(end, gapStart) - start);
+        System.arraycopy(chars, start, copy, 0, before);
+        int gap = gapEnd - gapStart;
+        System.arraycopy(chars, start + before + gap, copy, before, copy.length - before);
+        return copy;
+    }
+
+    private void moveGap(int index) {
+        if (index < gapStart) {
+            int moved = gapStart - index;
+            System.arraycopy(chars, index, chars, gapEnd - moved, moved);
+            gapStart -= moved;
+            gapEnd -= moved;
+        } else if (index > gapStart) {
+            int moved = index - gapStart;
+            System.arraycopy(chars, gapEnd, chars, gapStart, moved);
+            gapStart += moved;
+            gapEnd += moved;
+        }
+    }
+
+    private void grow(int needed) {
+        int after = chars.length - gapEnd;
+        int capacity = Math.max(chars.length * 2, chars.length + needed);
+        char[] grown = Arrays.copyOf(chars, capacity);
+        System.arraycopy(chars, gapEnd, grown, capacity - after, after);
+        chars = grown;
+        gapEnd = capacity - after;
+    }
+}
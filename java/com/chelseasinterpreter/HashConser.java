@@ -0,0 +1,214 @@
+package com.chelseasinterpreter;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+// Turns an expression tree into a DAG by giving every repeated subtree a
+// single node: same operator, same literal, same (already shared)
+// operands, same node. Only subtrees that can't throw are shared. Their
+// types are known without running them, because the leaves are all
+// literals. A subtree that might throw keeps a node of its own at each
+// place it appears, so a RuntimeError still points at the operator it
+// actually came from. Its operands can still be shared.
+class HashConser implements Expr.Visitor<Expr> {
+    // What a subtree comes up with, as far as can be told without
+    // running it. MIXED never throws but could be more than one type;
+    // MAY_THROW might throw.
+    private enum Type { NUMBER, STRING, BOOLEAN, NIL, MIXED, MAY_THROW }
+
+    static final class Dag {
+        final Expr root;
+        // Nodes with more than one parent.
+        final Set<Expr> shared;
+        final int nodesBefore;
+        final int nodesAfter;
+
+        private Dag(Expr root, Set<Expr> shared, int nodesBefore, int nodesAfter) {
+            this.root = root;
+            this.shared = shared;
+            this.nodesBefore = nodesBefore;
+            this.nodesAfter = nodesAfter;
+        }
+    }
+
+    private final Map<Key, Expr> canonical = new HashMap<>();
+    private final Map<Expr, Integer> parents = new IdentityHashMap<>();
+    private int nodesAfter;
+
+    // The type of the subtree the last visit returned.
+    private Type type;
+
+    Dag cons(Expr expr) {
+        canonical.clear();
+        parents.clear();
+        nodesAfter = 0;
+
+        Expr root = expr.accept(this);
+
+        Set<Expr> shared = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Map.Entry<Expr, Integer> entry : parents.entrySet()) {
+            if (entry.getValue() > 1) shared.add(entry.getKey());
+        }
+        return new Dag(root, shared, new NodeCounter().count(expr), nodesAfter);
+    }
+
+    @Override
+    public Expr visitBinaryExpr(Expr.Binary expr) {
+        Expr left = expr.left.accept(this);
+        Type leftType = type;
+        Expr right = expr.right.accept(this);
+        Type rightType = type;
+
+        type = binaryType(expr.operator.type, leftType, rightType);
+        Expr node = (left == expr.left && right == expr.right)
+                ? expr
+                : new Expr.Binary(left, expr.operator, right);
+        return keep(node, new Key(expr.operator.type, left, right, null, null), left, right);
+    }
+
+    @Override
+    public Expr visitGroupingExpr(Expr.Grouping expr) {
+        Expr inner = expr.expression.accept(this);
+
+        Expr node = inner == expr.expression ? expr : new Expr.Grouping(inner);
+        return keep(node, new Key(TokenType.LEFT_PAREN, inner, null, null, null), inner);
+    }
+
+    @Override
+    public Expr visitLiteralExpr(Expr.Literal expr) {
+        Object value = expr.value;
+        if (value instanceof Double) type = Type.NUMBER;
+        else if (value instanceof String) type = Type.STRING;
+        else if (value instanceof Boolean) type = Type.BOOLEAN;
+        else type = Type.NIL;
+
+        // Keyed by value and its class, so 1 and "1" stay apart.
+        return keep(expr, new Key(null, null, null, null, value));
+    }
+
+    @Override
+    public Expr visitUnaryExpr(Expr.Unary expr) {
+        Expr right = expr.right.accept(this);
+
+        if (expr.operator.type == TokenType.MINUS) {
+            if (type != Type.NUMBER) type = Type.MAY_THROW;
+        } else if (type != Type.MAY_THROW) {
+            type = Type.BOOLEAN;
+        }
+
+        Expr node = right == expr.right ? expr : new Expr.Unary(expr.operator, right);
+        return keep(node, new Key(expr.operator.type, right, null, null, null), right);
+    }
+
+    @Override
+    public Expr visitConditionalExpr(Expr.Conditional expr) {
+        Expr condition = expr.condition.accept(this);
+        Type conditionType = type;
+        Expr thenBranch = expr.thenBranch.accept(this);
+        Type thenType = type;
+        Expr elseBranch = expr.elseBranch.accept(this);
+        Type elseType = type;
+
+        if (conditionType == Type.MAY_THROW || thenType == Type.MAY_THROW || elseType == Type.MAY_THROW) {
+            type = Type.MAY_THROW;
+        } else {
+            type = thenType == elseType ? thenType : Type.MIXED;
+        }
+
+        Expr node = (condition == expr.condition && thenBranch == expr.thenBranch && elseBranch == expr.elseBranch)
+                ? expr
+                : new Expr.Conditional(condition, thenBranch, elseBranch);
+        return keep(node, new Key(TokenType.QUESTION_MARK, condition, thenBranch, elseBranch, null),
+                condition, thenBranch, elseBranch);
+    }
+
+    @Override
+    public Expr visitErrorExpr(Expr.Error expr) {
+        // Raises its error when run, and keeps its own node to point at.
+        type = Type.MAY_THROW;
+        return keep(expr, null);
+    }
+
+    // Settles on the node for a subtree, given the type the visit just
+    // worked out: the existing one for its key if it can be shared,
+    // otherwise this one, whose operands then have one more parent each.
+    private Expr keep(Expr node, Key key, Expr... operands) {
+        if (type != Type.MAY_THROW) {
+            Expr existing = canonical.putIfAbsent(key, node);
+            if (existing != null) return existing;
+        }
+
+        nodesAfter++;
+        for (Expr operand : operands) parents.merge(operand, 1, Integer::sum);
+        return node;
+    }
+
+    // Mirrors Interpreter.operate: the operand types that get past its
+    // checks, and what they come up with.
+    private static Type binaryType(TokenType operator, Type left, Type right) {
+        if (left == Type.MAY_THROW || right == Type.MAY_THROW) return Type.MAY_THROW;
+
+        boolean numbers = left == Type.NUMBER && right == Type.NUMBER;
+        switch (operator) {
+            case GREATER:
+            case GREATER_EQUAL:
+            case LESS:
+            case LESS_EQUAL:
+                return numbers ? Type.BOOLEAN : Type.MAY_THROW;
+            case MINUS:
+            case SLASH:
+            case STAR:
+                return numbers ? Type.NUMBER : Type.MAY_THROW;
+            case PLUS:
+                if (numbers) return Type.NUMBER;
+                if (left == Type.STRING && right == Type.STRING) return Type.STRING;
+                return Type.MAY_THROW;
+            case BANG_EQUAL:
+            case EQUAL_EQUAL:
+                return Type.BOOLEAN;
+            default:
+                // ',' comes up with nil.
+                return Type.NIL;
+        }
+    }
+
+    // Operands compare by identity: they have been shared already, so
+    // equal operands are the same node.
+    private static final class Key {
+        private final TokenType operator;
+        private final Expr first;
+        private final Expr second;
+        private final Expr third;
+        private final Object value;
+
+        Key(TokenType operator, Expr first, Expr second, Expr third, Object value) {
+            this.operator = operator;
+            this.first = first;
+            this.second = second;
+            this.third = third;
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) return false;
+            Key key = (Key) other;
+            return operator == key.operator &&
+                    first == key.first && second == key.second && third == key.third &&
+                    Objects.equals(value, key.value);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = Objects.hashCode(operator);
+            hash = 31 * hash + System.identityHashCode(first);
+            hash = 31 * hash + System.identityHashCode(second);
+            hash = 31 * hash + System.identityHashCode(third);
+            return 31 * hash + Objects.hashCode(value);
+        }
+    }
+}
@@ -0,0 +1,529 @@
+package com.chelseasinterpreter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.chelseasinterpreter.TokenType.*;
+
+// A source that is edited in place, for an editor that wants the tree
+// back after every keystroke. It keeps the tokens and the tree from last
+// time. After an edit it re-scans from just before the edit until the
+// scan falls back into step with the old tokens, then re-parses only the
+// innermost parenthesized group around the tokens that changed and
+// rebuilds the nodes above it. Everything else is reused. Edits outside
+// any parentheses re-parse all the tokens, but still don't re-scan them.
+//
+// Reused tokens keep the offsets they were first scanned at, so where
+// each token is now is kept here instead. Whenever a scan or parse finds
+// an error, the whole text is scanned and parsed again to report it, so
+// errors read exactly as they would from LoxEngine.run.
+//
+// Not thread-safe.
+public class IncrementalSource {
+    private final GapBuffer text;
+    private final ErrorReporter errors;
+
+    // EOF last.
+    private final TokenGapBuffer tokens = new TokenGapBuffer();
+
+    private Expr tree = null;
+    // How many tokens each node of the tree covers. Literals cover one
+    // and are left out.
+    private final Map<Expr, Integer> spans = new IdentityHashMap<>();
+
+    private boolean hadError = false;
+    // Whether the tree covers every token, so that parts of it can be
+    // re-parsed in place. False after errors, and after sources like
+    // "1 2" that parse() stops partway through without complaint.
+    private boolean incremental = false;
+
+    private final ErrorReporter reporter = new ErrorReporter() {
+        @Override
+        public void error(int line, int column, String message) {
+            errors.error(line, column, message);
+            hadError = true;
+        }
+
+        @Override
+        public void error(Token token, String message) {
+            errors.error(token, message);
+            hadError = true;
+        }
+
+        @Override
+        public void runtimeError(RuntimeError error) {
+            errors.runtimeError(error);
+        }
+    };
+
+    // Hears about errors in a part being re-scanned or re-parsed, which
+    // sends the edit back through a full pass to be reported properly.
+    private boolean partFailed = false;
+    private final ErrorReporter partReporter = new ErrorReporter() {
+        @Override
+        public void error(int line, int column, String message) {
+            partFailed = true;
+        }
+
+        @Override
+        public void error(Token token, String message) {
+            partFailed = true;
+        }
+
+        @Override
+        public void runtimeError(RuntimeError error) {
+            partFailed = true;
+        }
+    };
+
+    public IncrementalSource(CharSequence text) {
+        this(text, ErrorReporter.standardError());
+    }
+
+    IncrementalSource(CharSequence text, ErrorReporter errors) {
+        this.text = new GapBuffer(text);
+        this.errors = errors;
+        rebuild();
+    }
+
+    public String text() {
+        return text.toString();
+    }
+
+    // Whether the text as it stands has a syntax error. Errors are
+    // reported as the edit that causes them is made.
+    public boolean hadError() {
+        return hadError;
+    }
+
+    // What the text parses to, as parse() would have it.
+    Expr tree() {
+        return tree;
+    }
+
+    // Replaces the text from start up to end, like StringBuilder.replace.
+    public void edit(int start, int end, CharSequence replacement) {
+        if (start < 0 || start > end || end > text.length()) {
+            throw new IndexOutOfBoundsException(
+                    "Edit " + start + ".." + end + " is outside a source of length " + text.length() + ".");
+        }
+
+        text.replace(start, end, replacement);
+        if (!incremental || !update(start, end, replacement.length())) rebuild();
+    }
+
+    // The same error with its token swapped for the one a fresh scan of
+    // the text would make, whose line and column are where it is now.
+    RuntimeError locate(RuntimeError error) {
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.token(i) != error.token) continue;
+
+            Scanner scanner = new Scanner(text, partReporter);
+            Token token = scanner.nextToken();
+            for (int skipped = 0; skipped < i; skipped++) token = scanner.nextToken();
+            return new RuntimeError(token, error.getMessage());
+        }
+        return error;
+    }
+
+    // Scans and parses the whole text, reporting whatever is wrong with it.
+    private void rebuild() {
+        tokens.clear();
+        spans.clear();
+        tree = null;
+        hadError = false;
+        incremental = false;
+
+        Scanner scanner = new Scanner(text, reporter);
+        Expr expression = new Parser(() -> {
+            Token token = scanner.nextToken();
+            tokens.add(token);
+            return token;
+        }, reporter).parse();
+        if (hadError || expression == null) return;
+
+        tree = expression;
+        measure(tree);
+        incremental = span(tree) == tokens.size() - 1;
+    }
+
+    // Brings the tokens and tree up to date with the text from start to
+    // end (in the old text) having been replaced by inserted characters.
+    // False, part way through, if the edit needs a full pass instead.
+    private boolean update(int start, int end, int inserted) {
+        int delta = inserted - (end - start);
+
+        // The first token that might scan differently is the first whose
+        // scan looked at anything from the edit on. The scan starts over
+        // where the token before it ended.
+        int size = tokens.size();
+        int first = firstEndingAfter(start - 2);
+        while (first < size - 1 && tokens.end(first) + lookahead(tokens.token(first)) <= start) first++;
+        Scanner scanner = new Scanner(text, partReporter);
+        if (first > 0) scanner.resumeAt(tokens.end(first - 1), tokens.line(first - 1));
+
+        // Once the scan starts a token where one of the old tokens after
+        // the edit started, the rest of the text scans as it did before.
+        List<Token> scanned = new ArrayList<>();
+        int next = firstStartingAt(end);
+        int lineDelta = 0;
+        partFailed = false;
+        try {
+            for (;;) {
+                Token token = scanner.nextToken();
+                if (partFailed) return false;
+
+                int oldStart = token.start - delta;
+                while (next < size && tokens.start(next) < oldStart) next++;
+                if (next < size && tokens.start(next) == oldStart) {
+                    lineDelta = firstLine(token, token.line) - firstLine(tokens.token(next), tokens.line(next));
+                    break;
+                }
+
+                scanned.add(token);
+                if (token.type == EOF) {
+                    next = size;
+                    break;
+                }
+            }
+        } catch (RuntimeException error) {
+            return false;
+        }
+
+        // Only whitespace or comments changed, or a token was retyped as
+        // itself: the tree stands, and the tokens just move.
+        if (sameTokens(first, next, scanned)) {
+            tokens.reposition(first, scanned, delta, lineDelta);
+            return true;
+        }
+
+        // The innermost parentheses around the changed tokens, if the
+        // changes leave them paired the same way.
+        int open = -1;
+        int close = -1;
+        if (balanced(first, next) && balanced(scanned)) {
+            open = enclosingOpen(first);
+            if (open >= 0) close = matchingClose(next);
+        }
+
+        int tokenDelta = scanned.size() - (next - first);
+        List<Expr> path = close < 0 ? null : pathTo(open);
+        tokens.replace(first, next, scanned, delta, lineDelta);
+
+        if (path == null) {
+            spans.clear();
+            Expr expression = parse(0, tokens.size() - 1);
+            if (expression == null) return false;
+            tree = expression;
+            return true;
+        }
+
+        Expr expression = parse(open + 1, close + tokenDelta);
+        if (expression == null) return false;
+
+        Expr.Grouping group = (Expr.Grouping) path.remove(path.size() - 1);
+        forget(group);
+        Expr replacement = new Expr.Grouping(expression);
+        spans.put(replacement, span(expression) + 2);
+
+        // The nodes above the group are immutable, so each is rebuilt
+        // around its new child, up to the root.
+        Expr replaced = group;
+        for (int i = path.size() - 1; i >= 0; i--) {
+            Expr parent = path.get(i);
+            Expr rebuilt = withChild(parent, replaced, replacement);
+            spans.put(rebuilt, spans.remove(parent) + tokenDelta);
+            replaced = parent;
+            replacement = rebuilt;
+        }
+        tree = replacement;
+        return true;
+    }
+
+    // Parses tokens from up to to as a whole expression, measuring it, or
+    // null if they aren't exactly one or have an error in them.
+    private Expr parse(int from, int to) {
+        partFailed = false;
+        Token eof = new Token(EOF, "", null, 0);
+        TokenSource source = new TokenSource() {
+            private int next = from;
+
+            @Override
+            public Token nextToken() {
+                return next < to ? tokens.token(next++) : eof;
+            }
+        };
+
+        Expr expression = new Parser(source, partReporter).parse();
+        if (partFailed || expression == null) return null;
+
+        measure(expression);
+        return span(expression) == to - from ? expression : null;
+    }
+
+    // The root down to the Grouping whose '(' is token open, that Grouping
+    // last. Null if there is no such Grouping.
+    private List<Expr> pathTo(int open) {
+        List<Expr> path = new ArrayList<>();
+        Expr node = tree;
+        int at = 0;
+        for (;;) {
+            path.add(node);
+            if (node instanceof Expr.Grouping) {
+                if (at == open) return path;
+                node = ((Expr.Grouping) node).expression;
+                at += 1;
+            } else if (node instanceof Expr.Unary) {
+                node = ((Expr.Unary) node).right;
+                at += 1;
+            } else if (node instanceof Expr.Binary) {
+                Expr.Binary binary = (Expr.Binary) node;
+                int rightAt = at + span(binary.left) + 1;
+                if (open < rightAt) {
+                    node = binary.left;
+                } else {
+                    node = binary.right;
+                    at = rightAt;
+                }
+            } else if (node instanceof Expr.Conditional) {
+                Expr.Conditional conditional = (Expr.Conditional) node;
+                int thenAt = at + span(conditional.condition) + 1;
+                int elseAt = thenAt + span(conditional.thenBranch) + 1;
+                if (open < thenAt) {
+                    node = conditional.condition;
+                } else if (open < elseAt) {
+                    node = conditional.thenBranch;
+                    at = thenAt;
+                } else {
+                    node = conditional.elseBranch;
+                    at = elseAt;
+                }
+            } else {
+                return null;
+            }
+        }
+    }
+
+    private static Expr withChild(Expr parent, Expr child, Expr replacement) {
+        if (parent instanceof Expr.Grouping) {
+            return new Expr.Grouping(replacement);
+        }
+
+        if (parent instanceof Expr.Unary) {
+            return new Expr.Unary(((Expr.Unary) parent).operator, replacement);
+        }
+
+        if (parent instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary) parent;
+            return new Expr.Binary(
+                    binary.left == child ? replacement : binary.left,
+                    binary.operator,
+                    binary.right == child ? replacement : binary.right);
+        }
+
+        Expr.Conditional conditional = (Expr.Conditional) parent;
+        return new Expr.Conditional(
+                conditional.condition == child ? replacement : conditional.condition,
+                conditional.thenBranch == child ? replacement : conditional.thenBranch,
+                conditional.elseBranch == child ? replacement : conditional.elseBranch);
+    }
+
+    private int span(Expr node) {
+        if (node instanceof Expr.Literal) return 1;
+        return spans.get(node);
+    }
+
+    // Works out spans bottom up, on a stack rather than by recursing.
+    private void measure(Expr root) {
+        Deque<Expr> pending = new ArrayDeque<>();
+        Deque<Expr> measuring = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Expr node = pending.pop();
+            if (node instanceof Expr.Literal) continue;
+            measuring.push(node);
+            pushChildren(node, pending);
+        }
+
+        // Every node comes off after everything under it.
+        while (!measuring.isEmpty()) {
+            Expr node = measuring.pop();
+            int span;
+            if (node instanceof Expr.Grouping) {
+                span = span(((Expr.Grouping) node).expression) + 2;
+            } else if (node instanceof Expr.Unary) {
+                span = span(((Expr.Unary) node).right) + 1;
+            } else if (node instanceof Expr.Binary) {
+                Expr.Binary binary = (Expr.Binary) node;
+                span = span(binary.left) + span(binary.right) + 1;
+            } else {
+                Expr.Conditional conditional = (Expr.Conditional) node;
+                span = span(conditional.condition) + span(conditional.thenBranch) +
+                        span(conditional.elseBranch) + 2;
+            }
+            spans.put(node, span);
+        }
+    }
+
+    private void forget(Expr root) {
+        Deque<Expr> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Expr node = pending.pop();
+            if (node instanceof Expr.Literal) continue;
+            spans.remove(node);
+            pushChildren(node, pending);
+        }
+    }
+
+    private static void pushChildren(Expr node, Deque<Expr> pending) {
+        if (node instanceof Expr.Grouping) {
+            pending.push(((Expr.Grouping) node).expression);
+        } else if (node instanceof Expr.Unary) {
+            pending.push(((Expr.Unary) node).right);
+        } else if (node instanceof Expr.Binary) {
+            pending.push(((Expr.Binary) node).right);
+            pending.push(((Expr.Binary) node).left);
+        } else if (node instanceof Expr.Conditional) {
+            Expr.Conditional conditional = (Expr.Conditional) node;
+            pending.push(conditional.elseBranch);
+            pending.push(conditional.thenBranch);
+            pending.push(conditional.condition);
+        }
+    }
+
+    private boolean sameTokens(int from, int to, List<Token> scanned) {
+        if (scanned.size() != to - from) return false;
+
+        for (int i = 0; i < scanned.size(); i++) {
+            Token old = tokens.token(from + i);
+            Token token = scanned.get(i);
+            if (old.type != token.type || !old.lexeme.equals(token.lexeme) ||
+                    !Interpreter.isEqual(old.literal, token.literal)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // No ')' without a '(' before it, and none left open.
+    private static boolean balanced(List<Token> run) {
+        int depth = 0;
+        for (Token token : run) {
+            if (token.type == LEFT_PAREN) {
+                depth++;
+            } else if (token.type == RIGHT_PAREN && depth-- == 0) {
+                return false;
+            }
+        }
+        return depth == 0;
+    }
+
+    private boolean balanced(int from, int to) {
+        int depth = 0;
+        for (int i = from; i < to; i++) {
+            if (tokens.token(i).type == LEFT_PAREN) {
+                depth++;
+            } else if (tokens.token(i).type == RIGHT_PAREN && depth-- == 0) {
+                return false;
+            }
+        }
+        return depth == 0;
+    }
+
+    // The nearest '(' before token index that isn't closed before it.
+    private int enclosingOpen(int index) {
+        int depth = 0;
+        for (int i = index - 1; i >= 0; i--) {
+            if (tokens.token(i).type == RIGHT_PAREN) {
+                depth++;
+            } else if (tokens.token(i).type == LEFT_PAREN && depth-- == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // The nearest ')' from token index on that isn't opened after it.
+    private int matchingClose(int index) {
+        int depth = 0;
+        for (int i = index; i < tokens.size(); i++) {
+            if (tokens.token(i).type == LEFT_PAREN) {
+                depth++;
+            } else if (tokens.token(i).type == RIGHT_PAREN && depth-- == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // The line a token starts on. Only strings count newlines inside them.
+    private static int firstLine(Token token, int line) {
+        if (token.type != STRING) return line;
+
+        for (int i = 0; i < token.lexeme.length(); i++) {
+            if (token.lexeme.charAt(i) == '\n') line--;
+        }
+        return line;
+    }
+
+    // How far past its end a token's scan looked. A number checks for a
+    // fraction; operators, slashes and words check the next character.
+    private static int lookahead(Token token) {
+        switch (token.type) {
+            case NUMBER:
+                return 2;
+            case LEFT_PAREN:
+            case RIGHT_PAREN:
+            case LEFT_BRACE:
+            case RIGHT_BRACE:
+            case COMMA:
+            case DOT:
+            case MINUS:
+            case PLUS:
+            case SEMICOLON:
+            case STAR:
+            case COLON:
+            case QUESTION_MARK:
+            case STRING:
+                return 0;
+            default:
+                return 1;
+        }
+    }
+
+    // Ends and starts both only grow along the tokens, and EOF ends and
+    // starts at the end of the text, so both searches find something.
+    // No token looks more than two characters past its end.
+    private int firstEndingAfter(int offset) {
+        int low = 0;
+        int high = tokens.size() - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (tokens.end(middle) > offset) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    private int firstStartingAt(int offset) {
+        int low = 0;
+        int high = tokens.size() - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (tokens.start(middle) >= offset) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+}
@@ -1,12 +1,36 @@
 package com.chelseasinterpreter;
 
+import static com.chelseasinterpreter.TokenType.*;
+
 class Interpreter implements Expr.Visitor<Object>{
+    // How many nodes isNumeric may look at before giving up on a subtree.
+    private static final int NUMERIC_CHECK_BUDGET = 16;
+    private int numericCheckBudget;
+
+    private final OutputSink output;
+    private final ErrorReporter errors;
+
+    // The unboxed paths, each a walk of its own through Expr.dispatch.
+    private final Numbers numbers = new Numbers();
+    private final NumericCheck numericCheck = new NumericCheck();
+    private final Truthiness truthiness = new Truthiness();
+
+    Interpreter() {
+        this(OutputSink.standardOutput(), ErrorReporter.standardError());
+    }
+
+    Interpreter(OutputSink output, ErrorReporter errors) {
+        this.output = output;
+        this.errors = errors;
+    }
+
     void interpret(Expr expression) {
         try {
             Object value = evaluate(expression);
-            System.out.println(stringify(value));
+            output.write(value);
         } catch (RuntimeError error) {
-            Lox.runtimeError(error);
+            output.flush();
+            errors.runtimeError(error);
         }
     }
 
@@ -22,26 +46,45 @@ class Interpreter implements Expr.Visitor<Object>{
 
     @Override
     public Object visitBinaryExpr(Expr.Binary expr) {
+        if (takesNumbers(expr.operator.type) &&
+                isNumeric(expr.left) && isNumeric(expr.right)) {
+            double left = evaluateDouble(expr.left);
+            double right = evaluateDouble(expr.right);
+
+            switch (expr.operator.type) {
+                case GREATER:
+                case GREATER_EQUAL:
+                case LESS:
+                case LESS_EQUAL:
+                    return compare(expr.operator.type, left, right);
+                default:
+                    return arithmetic(expr.operator.type, left, right);
+            }
+        }
+
         Object left = evaluate(expr.left);
-        Object right = evaluate(expr.right);
+        return operate(expr.operator, left, evaluate(expr.right));
+    }
 
-        switch (expr.operator.type) {
+    // The operator applied to operands that are already evaluated.
+    Object operate(Token operator, Object left, Object right) {
+        switch (operator.type) {
             case GREATER:
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(operator, left, right);
                 return (double)left > (double)right;
             case GREATER_EQUAL:
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(operator, left, right);
                 return (double)left >= (double)right;
             case LESS:
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(operator, left, right);
                 return (double)left < (double)right;
             case LESS_EQUAL:
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(operator, left, right);
                 return (double)left <= (double)right;
             case BANG_EQUAL: return !isEqual(left, right);
             case EQUAL_EQUAL: return isEqual(left, right);
             case MINUS:
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(operator, left, right);
                 return (double)left - (double)right;
             case PLUS:
                 if (left instanceof Double && right instanceof Double) {
@@ -52,14 +95,14 @@ class Interpreter implements Expr.Visitor<Object>{
                     return (String)left + (String)right;
                 }
 
-                throw new RuntimeError(expr.operator,
+                throw new RuntimeError(operator,
                         "Operands must be two numbers or two strings.");
 
             case SLASH:
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(operator, left, right);
                 return (double)left / (double)right;
             case STAR:
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(operator, left, right);
                 return (double)left * (double)right;
         }
 
@@ -69,11 +112,19 @@ class Interpreter implements Expr.Visitor<Object>{
 
     @Override
     public Object visitUnaryExpr(Expr.Unary expr) {
-        Object right = evaluate(expr.right);
+        if (expr.operator.type == MINUS && isNumeric(expr.right)) {
+            return -evaluateDouble(expr.right);
+        }
+        if (expr.operator.type == BANG) return !isTruthy(expr.right);
+
+        return operate(expr.operator, evaluate(expr.right));
+    }
 
-        switch (expr.operator.type) {
+    // The prefix operator applied to an operand that is already evaluated.
+    Object operate(Token operator, Object right) {
+        switch (operator.type) {
             case MINUS:
-                checkNumberOperand(expr.operator, right);
+                checkNumberOperand(operator, right);
                 return -(double) right;
             case BANG:
                 return !isTruthy(right);
@@ -85,24 +136,254 @@ class Interpreter implements Expr.Visitor<Object>{
 
     @Override
     public Object visitConditionalExpr(Expr.Conditional expr) {
-        return null;
+        if (isTruthy(expr.condition)) {
+            return evaluate(expr.thenBranch);
+        }
+        return evaluate(expr.elseBranch);
     }
 
-    private boolean isTruthy(Object object) {
+    // Only a tree parsed with recovery on has these.
+    @Override
+    public Object visitErrorExpr(Expr.Error expr) {
+        throw new RuntimeError(expr.token, expr.message);
+    }
+
+    static boolean isTruthy(Object object) {
         if (object == null) return false;
         if (object instanceof Boolean) return (boolean) object;
         return true;
     }
 
-    private boolean isEqual(Object a, Object b) {
+    static boolean isEqual(Object a, Object b) {
         if (a == null && b == null) return true;
         if (a == null) return false;
 
         return a.equals(b);
     }
 
-    private Object evaluate(Expr expr) {
-        return expr.accept(this);
+    Object evaluate(Expr expr) {
+        return Expr.dispatch(expr, this);
+    }
+
+    // The unboxed paths walk subtrees themselves rather than through
+    // evaluate(), so a subclass that takes over evaluate() turns them off.
+    boolean unboxesNumbers() {
+        return true;
+    }
+
+    // Whether expr comes up with something truthy, without boxing what
+    // comparisons and '!' come up with on the way.
+    private boolean isTruthy(Expr expr) {
+        if (!unboxesNumbers()) return isTruthy(evaluate(expr));
+        return Expr.dispatch(expr, truthiness);
+    }
+
+    // The unboxed path. Only called on subtrees isNumeric has vouched for,
+    // which either come up with a number or throw the same RuntimeError
+    // the boxed path would have.
+    private double evaluateDouble(Expr expr) {
+        return Expr.dispatch(expr, numbers);
+    }
+
+    private final class Numbers implements Expr.DoubleVisitor {
+        @Override
+        public double visitLiteralExpr(Expr.Literal expr) {
+            return (double) expr.value;
+        }
+
+        @Override
+        public double visitGroupingExpr(Expr.Grouping expr) {
+            return evaluateDouble(expr.expression);
+        }
+
+        @Override
+        public double visitUnaryExpr(Expr.Unary expr) {
+            return -numericOperand(expr.operator, expr.right);
+        }
+
+        @Override
+        public double visitConditionalExpr(Expr.Conditional expr) {
+            if (isTruthy(expr.condition)) return evaluateDouble(expr.thenBranch);
+            return evaluateDouble(expr.elseBranch);
+        }
+
+        @Override
+        public double visitBinaryExpr(Expr.Binary expr) {
+            if (expr.operator.type == PLUS) {
+                // isNumeric only lets PLUS through when both sides are numbers.
+                double left = evaluateDouble(expr.left);
+                return left + evaluateDouble(expr.right);
+            }
+
+            if (isNumeric(expr.left) && isNumeric(expr.right)) {
+                double left = evaluateDouble(expr.left);
+                return arithmetic(expr.operator.type, left, evaluateDouble(expr.right));
+            }
+
+            Object left = evaluate(expr.left);
+            Object right = evaluate(expr.right);
+            checkNumberOperands(expr.operator, left, right);
+            return arithmetic(expr.operator.type, (double) left, (double) right);
+        }
+
+        @Override
+        public double visitErrorExpr(Expr.Error expr) {
+            throw new RuntimeError(expr.token, expr.message);
+        }
+    }
+
+    private double numericOperand(Token operator, Expr operand) {
+        if (isNumeric(operand)) return evaluateDouble(operand);
+
+        Object value = evaluate(operand);
+        checkNumberOperand(operator, value);
+        return (double) value;
+    }
+
+    private double arithmetic(TokenType operator, double left, double right) {
+        switch (operator) {
+            case MINUS: return left - right;
+            case PLUS: return left + right;
+            case SLASH: return left / right;
+            default: return left * right;
+        }
+    }
+
+    private boolean compare(TokenType operator, double left, double right) {
+        switch (operator) {
+            case GREATER: return left > right;
+            case GREATER_EQUAL: return left >= right;
+            case LESS: return left < right;
+            default: return left <= right;
+        }
+    }
+
+    private boolean takesNumbers(TokenType operator) {
+        switch (operator) {
+            case GREATER:
+            case GREATER_EQUAL:
+            case LESS:
+            case LESS_EQUAL:
+            case MINUS:
+            case PLUS:
+            case SLASH:
+            case STAR:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // Whether expr can only come up with a number, if it doesn't throw.
+    // '-', '*', '/' and negation can't produce anything else; '+', grouping
+    // and conditionals depend on what is under them, which is only looked
+    // into so far, so the check stays cheap on deep trees.
+    private boolean isNumeric(Expr expr) {
+        if (!unboxesNumbers()) return false;
+        numericCheckBudget = NUMERIC_CHECK_BUDGET;
+        return isNumericWithinBudget(expr);
+    }
+
+    private boolean isNumericWithinBudget(Expr expr) {
+        if (numericCheckBudget-- <= 0) return false;
+        return Expr.dispatch(expr, numericCheck);
+    }
+
+    private final class NumericCheck implements Expr.BooleanVisitor {
+        @Override
+        public boolean visitLiteralExpr(Expr.Literal expr) {
+            return expr.value instanceof Double;
+        }
+
+        @Override
+        public boolean visitGroupingExpr(Expr.Grouping expr) {
+            return isNumericWithinBudget(expr.expression);
+        }
+
+        @Override
+        public boolean visitUnaryExpr(Expr.Unary expr) {
+            return expr.operator.type == MINUS;
+        }
+
+        @Override
+        public boolean visitConditionalExpr(Expr.Conditional expr) {
+            return isNumericWithinBudget(expr.thenBranch) &&
+                    isNumericWithinBudget(expr.elseBranch);
+        }
+
+        @Override
+        public boolean visitBinaryExpr(Expr.Binary expr) {
+            switch (expr.operator.type) {
+                case MINUS:
+                case SLASH:
+                case STAR:
+                    return true;
+                case PLUS:
+                    return isNumericWithinBudget(expr.left) &&
+                            isNumericWithinBudget(expr.right);
+                default:
+                    return false;
+            }
+        }
+
+        @Override
+        public boolean visitErrorExpr(Expr.Error expr) {
+            return false;
+        }
+    }
+
+    // Comparisons of numbers, '!' and conditionals come up with their
+    // truthiness directly; anything else is evaluated and then tested.
+    private final class Truthiness implements Expr.BooleanVisitor {
+        @Override
+        public boolean visitLiteralExpr(Expr.Literal expr) {
+            return isTruthy(expr.value);
+        }
+
+        @Override
+        public boolean visitGroupingExpr(Expr.Grouping expr) {
+            return isTruthy(expr.expression);
+        }
+
+        @Override
+        public boolean visitUnaryExpr(Expr.Unary expr) {
+            if (expr.operator.type == BANG) return !isTruthy(expr.right);
+
+            // A negation that doesn't throw is a number, and so truthy.
+            numericOperand(expr.operator, expr.right);
+            return true;
+        }
+
+        @Override
+        public boolean visitConditionalExpr(Expr.Conditional expr) {
+            return isTruthy(expr.condition) ? isTruthy(expr.thenBranch) : isTruthy(expr.elseBranch);
+        }
+
+        @Override
+        public boolean visitBinaryExpr(Expr.Binary expr) {
+            switch (expr.operator.type) {
+                case GREATER:
+                case GREATER_EQUAL:
+                case LESS:
+                case LESS_EQUAL:
+                    if (isNumeric(expr.left) && isNumeric(expr.right)) {
+                        double left = evaluateDouble(expr.left);
+                        return compare(expr.operator.type, left, evaluateDouble(expr.right));
+                    }
+                    break;
+                case EQUAL_EQUAL:
+                case BANG_EQUAL: {
+                    Object left = evaluate(expr.left);
+                    return isEqual(left, evaluate(expr.right)) == (expr.operator.type == EQUAL_EQUAL);
+                }
+            }
+            return isTruthy(Interpreter.this.visitBinaryExpr(expr));
+        }
+
+        @Override
+        public boolean visitErrorExpr(Expr.Error expr) {
+            throw new RuntimeError(expr.token, expr.message);
+        }
     }
 
     private void checkNumberOperand(Token operator, Object operand) {
@@ -117,17 +398,31 @@ class Interpreter implements Expr.Visitor<Object>{
         throw new RuntimeError(operator, "Operands must be numbers.");
     }
 
-    private String stringify(Object object) {
-        if (object == null) return "nil";
+    static String stringify(Object object) {
+        StringBuilder builder = new StringBuilder();
+        stringify(object, builder);
+        return builder.toString();
+    }
+
+    // Appends straight to the builder, so a number doesn't go through a
+    // String of its own just to lose its ".0".
+    static void stringify(Object object, StringBuilder builder) {
+        if (object == null) {
+            builder.append("nil");
+            return;
+        }
 
         if (object instanceof Double) {
-            String text = object.toString();
-            if (text.endsWith(".0")) {
-                text = text.substring(0, text.length() - 2);
+            int start = builder.length();
+            builder.append((double) object);
+            int length = builder.length();
+            if (length - start >= 2 &&
+                    builder.charAt(length - 2) == '.' && builder.charAt(length - 1) == '0') {
+                builder.setLength(length - 2);
             }
-            return text;
+            return;
         }
 
-        return object.toString();
+        builder.append(object);
     }
 }
@@ -0,0 +1,108 @@
+package com.chelseasinterpreter;
+
+import java.util.Arrays;
+
+// Evaluates like the Interpreter, in the same order and with the same
+// errors, but keeps its own stacks of pending nodes and of values instead
+// of recursing, so an expression can nest as deep as the heap allows.
+// The stacks are kept between evaluations.
+class IterativeInterpreter extends Interpreter {
+    private Expr[] nodes = new Expr[32];
+    // How far along each pending node is: 0 before any of its operands.
+    private int[] states = new int[32];
+    private int depth = 0;
+
+    private Object[] values = new Object[32];
+    private int valueCount = 0;
+
+    IterativeInterpreter(OutputSink output, ErrorReporter errors) {
+        super(output, errors);
+    }
+
+    @Override
+    Object evaluate(Expr expr) {
+        // A RuntimeError can leave the last evaluation's nodes behind.
+        Arrays.fill(nodes, 0, depth, null);
+        Arrays.fill(values, 0, valueCount, null);
+        depth = 0;
+        valueCount = 0;
+
+        push(expr);
+        while (depth > 0) {
+            int top = depth - 1;
+            Expr node = nodes[top];
+            int state = states[top]++;
+
+            if (node instanceof Expr.Literal) {
+                pop();
+                pushValue(((Expr.Literal) node).value);
+            } else if (node instanceof Expr.Binary) {
+                Expr.Binary binary = (Expr.Binary) node;
+                if (state == 0) {
+                    push(binary.left);
+                } else if (state == 1) {
+                    push(binary.right);
+                } else {
+                    pop();
+                    Object right = popValue();
+                    pushValue(operate(binary.operator, popValue(), right));
+                }
+            } else if (node instanceof Expr.Grouping) {
+                if (state == 0) {
+                    push(((Expr.Grouping) node).expression);
+                } else {
+                    pop();
+                }
+            } else if (node instanceof Expr.Unary) {
+                Expr.Unary unary = (Expr.Unary) node;
+                if (state == 0) {
+                    push(unary.right);
+                } else {
+                    pop();
+                    pushValue(operate(unary.operator, popValue()));
+                }
+            } else if (node instanceof Expr.Error) {
+                throw new RuntimeError(((Expr.Error) node).token, ((Expr.Error) node).message);
+            } else {
+                Expr.Conditional conditional = (Expr.Conditional) node;
+                if (state == 0) {
+                    push(conditional.condition);
+                } else {
+                    // The branch takes this node's place on the stack.
+                    nodes[top] = isTruthy(popValue()) ? conditional.thenBranch : conditional.elseBranch;
+                    states[top] = 0;
+                }
+            }
+        }
+
+        Object value = values[0];
+        values[0] = null;
+        valueCount = 0;
+        return value;
+    }
+
+    private void push(Expr expr) {
+        if (depth == nodes.length) {
+            nodes = Arrays.copyOf(nodes, depth * 2);
+            states = Arrays.copyOf(states, depth * 2);
+        }
+        nodes[depth] = expr;
+        states[depth] = 0;
+        depth++;
+    }
+
+    private void pop() {
+        nodes[--depth] = null;
+    }
+
+    private void pushValue(Object value) {
+        if (valueCount == values.length) values = Arrays.copyOf(values, valueCount * 2);
+        values[valueCount++] = value;
+    }
+
+    private Object popValue() {
+        Object value = values[--valueCount];
+        values[valueCount] = null;
+        return value;
+    }
+}
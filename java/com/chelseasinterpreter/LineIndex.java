@@ -0,0 +1,32 @@
+package com.chelseasinterpreter;
+
+import java.util.Arrays;
+
+// The offset each line of a source starts at, recorded by the scanner as
+// it counts lines. Tokens only carry offsets; their columns are worked out
+// from here when an error message or a tool asks for one.
+class LineIndex {
+    private int[] lineStarts = new int[64];
+    private int lineCount = 1;
+
+    void addLine(int offset) {
+        if (lineCount == lineStarts.length) {
+            lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+        }
+        lineStarts[lineCount++] = offset;
+    }
+
+    int lineCount() {
+        return lineCount;
+    }
+
+    int lineStart(int line) {
+        return lineStarts[line - 1];
+    }
+
+    // Columns count from 1, like lines.
+    int column(int line, int offset) {
+        if (line < 1 || line > lineCount) return 0;
+        return offset - lineStarts[line - 1] + 1;
+    }
+}
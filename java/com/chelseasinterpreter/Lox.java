@@ -1,35 +1,112 @@
 package com.chelseasinterpreter;
 
 import java.io.BufferedReader;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
 
 public class Lox {
-    static boolean hadError = false;
-    static boolean hadRuntimeError = false;
-    private static final Interpreter interpreter = new Interpreter();
+    // The command line's engine. Anything wanting its own configuration,
+    // or to run on other threads, makes its own LoxEngine.
+    private static final LoxEngine engine = new LoxEngine();
+
+    // Where --ast-cache keeps parsed scripts: "" for next to the script.
+    private static String astCacheDirectory = null;
 
     public static void main(String[] args) throws IOException {
-        if (args.length > 1) {
-            System.out.println("Usage: jlox [script]");
-            System.exit(64);
-        } else if (args.length == 1) {
-            runFile(args[0]);
+        List<String> scripts = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.equals("--stats")) {
+                writeStatsTo(System.err);
+            } else if (arg.startsWith("--stats=")) {
+                writeStatsTo(new PrintStream(
+                        new FileOutputStream(arg.substring("--stats=".length()), true), true));
+            } else if (arg.equals("--dump-tokens")) {
+                engine.setDumpTokens(true);
+            } else if (arg.equals("--dump-ast")) {
+                engine.setDumpAst(true);
+            } else if (arg.equals("--ast-cache")) {
+                astCacheDirectory = "";
+            } else if (arg.startsWith("--ast-cache=")) {
+                astCacheDirectory = arg.substring("--ast-cache=".length());
+            } else if (arg.equals("--all-errors")) {
+                engine.setReportAllSyntaxErrors(true);
+            } else if (arg.equals("--tree-walker")) {
+                engine.setBackend(LoxEngine.Backend.TREE_WALKER);
+            } else if (arg.equals("--specializing")) {
+                engine.setBackend(LoxEngine.Backend.SPECIALIZING);
+            } else if (arg.equals("--iterative")) {
+                engine.setBackend(LoxEngine.Backend.ITERATIVE);
+            } else if (arg.equals("--memoizing")) {
+                engine.setBackend(LoxEngine.Backend.MEMOIZING);
+            } else if (arg.equals("--parallel")) {
+                engine.setBackend(LoxEngine.Backend.PARALLEL);
+            } else if (arg.startsWith("--parallel=")) {
+                engine.setBackend(LoxEngine.Backend.PARALLEL);
+                try {
+                    engine.setParallelThreshold(Integer.parseInt(arg.substring("--parallel=".length())));
+                } catch (IllegalArgumentException error) {
+                    usage();
+                }
+            } else if (arg.startsWith("--")) {
+                usage();
+            } else {
+                scripts.add(arg);
+            }
+        }
+
+        if (scripts.size() > 1) {
+            usage();
+        } else if (scripts.size() == 1) {
+            runFile(scripts.get(0));
         } else {
             runPrompt();
         }
     }
 
+    private static void usage() {
+        System.out.println("Usage: jlox [--tree-walker | --specializing | --memoizing | --iterative | --parallel[=threshold]] [--dump-tokens] [--dump-ast] [--all-errors] [--ast-cache[=directory]] [--stats[=file]] [script]");
+        System.exit(64);
+    }
+
+    public static void addPipelineListener(PipelineListener listener) {
+        engine.addPipelineListener(listener);
+    }
+
+    public static void removePipelineListener(PipelineListener listener) {
+        engine.removePipelineListener(listener);
+    }
+
+    // One JSON object per phase per line.
+    private static void writeStatsTo(PrintStream out) {
+        addPipelineListener(stats -> out.println(stats.toJson()));
+    }
+
     private static void runFile(String path) throws IOException {
-        if (hadError) System.exit(65);
-        if (hadRuntimeError) System.exit(70);
+        Path script = Paths.get(path);
+        if (astCacheDirectory != null) {
+            // The cache is keyed by the whole text, so there's no streaming it.
+            Path directory = astCacheDirectory.isEmpty()
+                    ? script.toAbsolutePath().resolveSibling(".loxcache")
+                    : Paths.get(astCacheDirectory);
+            engine.setAstCache(new AstCache(directory));
+            engine.run(new String(Files.readAllBytes(script), Charset.defaultCharset()));
+        } else {
+            try (Reader reader = new InputStreamReader(
+                    Files.newInputStream(script), Charset.defaultCharset())) {
+                engine.run(reader);
+            }
+        }
 
-        byte[] bytes = Files.readAllBytes(Paths.get(path));
-        run(new String(bytes, Charset.defaultCharset()));
+        if (engine.hadError()) System.exit(65);
+        if (engine.hadRuntimeError()) System.exit(70);
     }
 
     private static void runPrompt() throws IOException {
@@ -38,51 +115,30 @@ public class Lox {
 
         for (;;) {
             System.out.print("> ");
-            run(reader.readLine());
-            hadError = false;
-
-        }
-    }
-
-    private static void run(String source) {
-        Scanner scanner = new Scanner(source);
-        List<Token> tokens = scanner.scanTokens();
-
-        for (Token token: tokens) {
-            System.out.println(token);
+            engine.run(reader.readLine());
         }
-        Parser parser = new Parser(tokens);
-        Expr expression = parser.parse();
-
-        // Stop if there was a syntax error.
-        if (hadError) return;
-
-        System.out.println(new AstPrinter().print(expression));
-        interpreter.interpret(expression);
-    }
-
-    static void error(int line, String message) {
-        report(line, "", message);
     }
 
-    private static void report(int line, String where, String message) {
-        System.err.println(
-                "[line " + line + "] Error" + where + ": " + message);
-        hadError = true;
+    static String errorMessage(int line, int column, String where, String message) {
+        return position(line, column) + " Error" + where + ": " + message;
     }
 
-    static void error(Token token, String message) {
+    static String errorMessage(Token token, String message) {
         if (token.type == TokenType.EOF) {
-            report(token.line, " at end", message);
-        } else {
-            report(token.line, " at '" + token.lexeme + "'", message);
+            return errorMessage(token.startLine(), token.column(), " at end", message);
         }
+        return errorMessage(token.startLine(), token.column(), " at '" + token.lexeme + "'", message);
+    }
+
+    static String runtimeErrorMessage(RuntimeError error) {
+        return error.getMessage() +
+                "\n" + position(error.token.startLine(), error.token.column());
     }
 
-    static void runtimeError(RuntimeError error) {
-        System.err.println(error.getMessage() +
-                "\n[line " + error.token.line + "]");
-        hadRuntimeError = true;
+    // Column 0 means the column isn't known.
+    private static String position(int line, int column) {
+        if (column <= 0) return "[line " + line + "]";
+        return "[line " + line + ", column " + column + "]";
     }
 
-}
\ No newline at end of file
+}
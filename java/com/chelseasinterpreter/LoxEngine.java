@@ -0,0 +1,318 @@
+package com.chelseasinterpreter;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+// Everything one evaluation pipeline needs: its configuration, the
+// scanner-to-interpreter pipeline with the state each stage keeps between
+// runs, where output and errors go, and whether the latest run had an
+// error.
+// Nothing here is static, so independent engines can run on as many
+// threads as there are engines. One engine is not thread-safe; give each
+// thread its own. Engines writing to OutputSink.standardOutput() share it,
+// which is safe, but their lines interleave.
+public class LoxEngine {
+    public enum Backend { BYTECODE, TREE_WALKER, SPECIALIZING, PARALLEL, MEMOIZING, ITERATIVE }
+
+    private final OutputSink output;
+    private final PrintStream errorStream;
+    private final PrintWriter diagnostics = new PrintWriter(
+            new BufferedWriter(new OutputStreamWriter(System.out)), false);
+
+    private Backend backend = Backend.BYTECODE;
+    private boolean dumpTokens = false;
+    private boolean dumpAst = false;
+    private boolean reportAllSyntaxErrors = false;
+    private int parallelThreshold = ParallelInterpreter.DEFAULT_THRESHOLD;
+    private final List<PipelineListener> pipelineListeners = new ArrayList<>();
+    private int runs = 0;
+    private ExpressionCache expressionCache = null;
+    private AstCache astCache = null;
+
+    private boolean hadError = false;
+    private boolean hadRuntimeError = false;
+
+    // The edited source being run, if that's what is running.
+    private IncrementalSource running = null;
+
+    private final ErrorReporter errors = new ErrorReporter() {
+        @Override
+        public void error(int line, int column, String message) {
+            errorStream.println(Lox.errorMessage(line, column, "", message));
+            hadError = true;
+        }
+
+        @Override
+        public void error(Token token, String message) {
+            errorStream.println(Lox.errorMessage(token, message));
+            hadError = true;
+        }
+
+        @Override
+        public void runtimeError(RuntimeError error) {
+            // An edited source's tree can hold tokens scanned before the
+            // latest edits moved them.
+            if (running != null) error = running.locate(error);
+            errorStream.println(Lox.runtimeErrorMessage(error));
+            hadRuntimeError = true;
+        }
+    };
+
+    private final Interpreter interpreter;
+    private final Optimizer optimizer = new Optimizer();
+    private final BytecodeCompiler compiler = new BytecodeCompiler();
+    private final VirtualMachine vm;
+    private final SpecializingInterpreter specializingInterpreter;
+    private final ParallelInterpreter parallelInterpreter;
+    private final HashConser hashConser = new HashConser();
+    private final MemoizingInterpreter memoizingInterpreter;
+    private final IterativeInterpreter iterativeInterpreter;
+
+    public LoxEngine() {
+        this(OutputSink.standardOutput(), System.err);
+    }
+
+    public LoxEngine(OutputSink output, PrintStream errorStream) {
+        this.output = output;
+        this.errorStream = errorStream;
+        this.interpreter = new Interpreter(output, errors);
+        this.vm = new VirtualMachine(output, errors);
+        this.specializingInterpreter = new SpecializingInterpreter(output, errors);
+        this.parallelInterpreter = new ParallelInterpreter(ForkJoinPool.commonPool(), output, errors);
+        this.memoizingInterpreter = new MemoizingInterpreter(output, errors);
+        this.iterativeInterpreter = new IterativeInterpreter(output, errors);
+    }
+
+    public void setBackend(Backend backend) {
+        this.backend = backend;
+    }
+
+    // Diagnostic dumps are off unless asked for, and buffered when on.
+    public void setDumpTokens(boolean dumpTokens) {
+        this.dumpTokens = dumpTokens;
+    }
+
+    public void setDumpAst(boolean dumpAst) {
+        this.dumpAst = dumpAst;
+    }
+
+    // Has the parser recover from syntax errors and carry on to the end,
+    // so one run reports all of them. Nothing runs after a syntax error
+    // either way.
+    public void setReportAllSyntaxErrors(boolean reportAllSyntaxErrors) {
+        this.reportAllSyntaxErrors = reportAllSyntaxErrors;
+    }
+
+    // With the PARALLEL backend, the smallest operand worth its own task,
+    // in nodes.
+    public void setParallelThreshold(int parallelThreshold) {
+        if (parallelThreshold < 1) {
+            throw new IllegalArgumentException("Threshold must be at least 1.");
+        }
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    public void addPipelineListener(PipelineListener listener) {
+        pipelineListeners.add(listener);
+    }
+
+    public void removePipelineListener(PipelineListener listener) {
+        pipelineListeners.remove(listener);
+    }
+
+    // Whether the latest run had a syntax error. Each run starts clean.
+    public boolean hadError() {
+        return hadError;
+    }
+
+    public boolean hadRuntimeError() {
+        return hadRuntimeError;
+    }
+
+    // Sources run as Strings are looked up here first, and their optimized
+    // trees kept here after. The cache may be shared with other engines.
+    public void setExpressionCache(ExpressionCache expressionCache) {
+        this.expressionCache = expressionCache;
+    }
+
+    // Sources run as Strings and not found in the ExpressionCache are
+    // looked up on disk here, and their parsed trees written here after,
+    // for the next process to find.
+    public void setAstCache(AstCache astCache) {
+        this.astCache = astCache;
+    }
+
+    public void run(String source) {
+        startRun();
+        PipelineStats stats = newPipelineStats();
+        if (expressionCache != null) {
+            stats.start();
+            Expr cached = expressionCache.get(source);
+            if (cached != null) {
+                stats.finish("cache", cached);
+
+                // Straight to the tree that was optimized last time, so an
+                // AST dump shows the optimized tree.
+                if (dumpAst) printAst(cached, stats);
+                interpret(cached, stats);
+                return;
+            }
+            stats.finish("cache");
+        }
+
+        if (astCache != null) {
+            stats.start();
+            Expr loaded = astCache.load(source);
+            if (loaded != null) {
+                stats.finish("load", loaded);
+                runParsed(loaded, source, stats);
+                return;
+            }
+            stats.finish("load");
+        }
+
+        run(new Scanner(source, errors), source, stats);
+    }
+
+    // Streams the source instead of holding all of it in memory.
+    public void run(Reader reader) {
+        startRun();
+        run(new Scanner(reader, errors), null, newPipelineStats());
+    }
+
+    // A source for an editor to change a bit at a time. It scans and
+    // parses as it is edited, reporting syntax errors to this engine.
+    public IncrementalSource open(CharSequence text) {
+        return new IncrementalSource(text, errors);
+    }
+
+    // Runs an open source as it stands after its latest edits.
+    public void run(IncrementalSource source) {
+        startRun();
+        // Its syntax errors were reported as it was edited.
+        hadError = source.hadError();
+        PipelineStats stats = newPipelineStats();
+        Expr expression = source.tree();
+        if (hadError || expression == null) return;
+
+        if (dumpAst) printAst(expression, stats);
+
+        if (optimizes()) {
+            stats.start();
+            expression = optimizer.optimize(expression);
+            stats.finish("optimize", expression);
+        }
+
+        running = source;
+        try {
+            interpret(expression, stats);
+        } finally {
+            running = null;
+        }
+    }
+
+    // source is the text being scanned, to cache the tree under, or null
+    // when it isn't all in memory.
+    private void run(Scanner scanner, String source, PipelineStats stats) {
+        TokenSource tokens = stats.scanning(scanner);
+
+        if (dumpTokens) tokens = dumpingTokens(tokens);
+
+        stats.start();
+        Parser parser = new Parser(tokens, errors);
+        parser.setRecovering(reportAllSyntaxErrors);
+        Expr expression = backend == Backend.ITERATIVE ? parser.parseIteratively() : parser.parse();
+        stats.finishScanAndParse(expression);
+        diagnostics.flush();
+
+        // Stop if there was a syntax error.
+        if (hadError || expression == null) return;
+
+        // A tree only the iterative parser could get through would be too
+        // deep for the backends that recurse, which load from the same
+        // cache without going through the parser's depth check.
+        if (astCache != null && source != null && backend != Backend.ITERATIVE) {
+            stats.start();
+            astCache.store(source, expression);
+            stats.finish("store");
+        }
+        runParsed(expression, source, stats);
+    }
+
+    private void runParsed(Expr expression, String source, PipelineStats stats) {
+        if (dumpAst) printAst(expression, stats);
+
+        if (optimizes()) {
+            stats.start();
+            expression = optimizer.optimize(expression);
+            stats.finish("optimize", expression);
+        }
+
+        if (expressionCache != null && source != null && expression != null) {
+            expressionCache.put(source, expression);
+        }
+        interpret(expression, stats);
+    }
+
+    // The Optimizer recurses, so it would undo the point of ITERATIVE. And
+    // it folds every subtree that can't throw into a Literal, which leaves
+    // nothing for MEMOIZING's hash-consing to share.
+    private boolean optimizes() {
+        return backend != Backend.ITERATIVE && backend != Backend.MEMOIZING;
+    }
+
+    private void startRun() {
+        hadError = false;
+        hadRuntimeError = false;
+    }
+
+    private PipelineStats newPipelineStats() {
+        return new PipelineStats(pipelineListeners, pipelineListeners.isEmpty() ? 0 : ++runs);
+    }
+
+    private void printAst(Expr expression, PipelineStats stats) {
+        stats.start();
+        diagnostics.println(new AstPrinter().print(expression));
+        diagnostics.flush();
+        stats.finish("print");
+    }
+
+    private void interpret(Expr expression, PipelineStats stats) {
+        stats.start();
+        switch (backend) {
+            case TREE_WALKER:
+                interpreter.interpret(expression);
+                break;
+            case SPECIALIZING:
+                specializingInterpreter.interpret(specializingInterpreter.prepare(expression));
+                break;
+            case PARALLEL:
+                parallelInterpreter.interpret(parallelInterpreter.prepare(expression, parallelThreshold));
+                break;
+            case MEMOIZING:
+                memoizingInterpreter.interpret(hashConser.cons(expression));
+                break;
+            case ITERATIVE:
+                iterativeInterpreter.interpret(expression);
+                break;
+            default:
+                vm.interpret(compiler.compile(expression));
+        }
+        output.flush();
+        stats.finish("interpret");
+    }
+
+    private TokenSource dumpingTokens(TokenSource source) {
+        return () -> {
+            Token token = source.nextToken();
+            diagnostics.println(token);
+            return token;
+        };
+    }
+}
@@ -0,0 +1,55 @@
+package com.chelseasinterpreter;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+// Evaluates a hash-consed DAG, working out each shared subtree at most
+// once per evaluation no matter how many parents it has. Only subtrees
+// that can't throw get shared, so a remembered value never hides an
+// error.
+class MemoizingInterpreter extends Interpreter {
+    // Stands in for a shared node's value before it's worked out, and for
+    // nil after, since the memo's null means "not shared".
+    private static final Object PENDING = new Object();
+    private static final Object NIL = new Object();
+
+    private final Map<Expr, Object> memo = new IdentityHashMap<>();
+
+    MemoizingInterpreter(OutputSink output, ErrorReporter errors) {
+        super(output, errors);
+    }
+
+    void interpret(HashConser.Dag dag) {
+        forget(dag);
+        interpret(dag.root);
+    }
+
+    Object evaluate(HashConser.Dag dag) {
+        forget(dag);
+        return evaluate(dag.root);
+    }
+
+    private void forget(HashConser.Dag dag) {
+        memo.clear();
+        for (Expr expr : dag.shared) memo.put(expr, PENDING);
+    }
+
+    @Override
+    Object evaluate(Expr expr) {
+        Object remembered = memo.get(expr);
+        if (remembered == null) return expr.accept(this);
+        if (remembered == NIL) return null;
+        if (remembered != PENDING) return remembered;
+
+        Object value = expr.accept(this);
+        memo.put(expr, value == null ? NIL : value);
+        return value;
+    }
+
+    // The unboxed path walks subtrees without going through evaluate(),
+    // which would skip the memo.
+    @Override
+    boolean unboxesNumbers() {
+        return false;
+    }
+}
@@ -0,0 +1,31 @@
+package com.chelseasinterpreter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Keeps printed values as lines in memory, for embedding the
+// interpreter somewhere that wants the output back rather than on stdout.
+public class MemoryOutputSink implements OutputSink {
+    private final List<String> lines = new ArrayList<>();
+    private final StringBuilder line = new StringBuilder();
+
+    @Override
+    public void write(Object value) {
+        line.setLength(0);
+        Interpreter.stringify(value, line);
+        lines.add(line.toString());
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    public List<String> lines() {
+        return Collections.unmodifiableList(lines);
+    }
+
+    public void clear() {
+        lines.clear();
+    }
+}
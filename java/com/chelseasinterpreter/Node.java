@@ -0,0 +1,432 @@
+package com.chelseasinterpreter;
+
+// An executable copy of an expression tree whose Binary nodes rewrite
+// themselves as they run. A Binary starts out uninitialized; the first
+// time it executes it looks at the operand values it got and replaces
+// itself in its parent with a node specialized for those types (number
+// arithmetic, string concatenation, number comparison). Specialized
+// nodes ask their children for unboxed doubles and skip the instanceof
+// checks entirely. If a specialized node ever sees an operand of another
+// type it replaces itself with a generic node that behaves like the
+// Interpreter, and stays that way.
+//
+// Rewriting mutates the tree, so a tree must only be executed by one
+// thread at a time.
+abstract class Node {
+    private Node parent;
+
+    abstract Object execute();
+
+    // Throws UnexpectedResult, carrying the value, when it isn't a number.
+    double executeDouble() {
+        Object value = execute();
+        if (value instanceof Double) return (double) value;
+        throw new UnexpectedResult(value);
+    }
+
+    void replaceChild(Node child, Node replacement) {
+        throw new IllegalStateException(getClass().getSimpleName() + " has no children.");
+    }
+
+    final <T extends Node> T adopt(T child) {
+        ((Node) child).parent = this;
+        return child;
+    }
+
+    final <T extends Node> T replace(T replacement) {
+        parent.replaceChild(this, parent.adopt(replacement));
+        return replacement;
+    }
+
+    // Not a real error, just a value of the wrong type coming back from
+    // executeDouble. No stack trace: it's thrown on purpose.
+    static class UnexpectedResult extends RuntimeException {
+        final Object value;
+
+        UnexpectedResult(Object value) {
+            super(null, null, false, false);
+            this.value = value;
+        }
+    }
+
+    static class Root extends Node {
+        private Node body;
+
+        Root(Node body) {
+            this.body = adopt(body);
+        }
+
+        @Override
+        Object execute() {
+            return body.execute();
+        }
+
+        @Override
+        void replaceChild(Node child, Node replacement) {
+            body = replacement;
+        }
+    }
+
+    static class NumberLiteral extends Node {
+        private final double value;
+
+        NumberLiteral(double value) {
+            this.value = value;
+        }
+
+        @Override
+        Object execute() {
+            return value;
+        }
+
+        @Override
+        double executeDouble() {
+            return value;
+        }
+    }
+
+    static class Literal extends Node {
+        private final Object value;
+
+        Literal(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        Object execute() {
+            return value;
+        }
+    }
+
+    // Where a tree parsed with recovery on had a syntax error.
+    static class Error extends Node {
+        private final Token token;
+        private final String message;
+
+        Error(Token token, String message) {
+            this.token = token;
+            this.message = message;
+        }
+
+        @Override
+        Object execute() {
+            throw new RuntimeError(token, message);
+        }
+    }
+
+    static class Negate extends Node {
+        private final Token operator;
+        private Node right;
+
+        Negate(Token operator, Node right) {
+            this.operator = operator;
+            this.right = adopt(right);
+        }
+
+        @Override
+        Object execute() {
+            return executeDouble();
+        }
+
+        @Override
+        double executeDouble() {
+            try {
+                return -right.executeDouble();
+            } catch (UnexpectedResult result) {
+                throw new RuntimeError(operator, "Operand must be a number.");
+            }
+        }
+
+        @Override
+        void replaceChild(Node child, Node replacement) {
+            right = replacement;
+        }
+    }
+
+    static class Not extends Node {
+        private Node right;
+
+        Not(Node right) {
+            this.right = adopt(right);
+        }
+
+        @Override
+        Object execute() {
+            return !Interpreter.isTruthy(right.execute());
+        }
+
+        @Override
+        void replaceChild(Node child, Node replacement) {
+            right = replacement;
+        }
+    }
+
+    static class Conditional extends Node {
+        private Node condition;
+        private Node thenBranch;
+        private Node elseBranch;
+
+        Conditional(Node condition, Node thenBranch, Node elseBranch) {
+            this.condition = adopt(condition);
+            this.thenBranch = adopt(thenBranch);
+            this.elseBranch = adopt(elseBranch);
+        }
+
+        @Override
+        Object execute() {
+            if (Interpreter.isTruthy(condition.execute())) return thenBranch.execute();
+            return elseBranch.execute();
+        }
+
+        @Override
+        double executeDouble() {
+            if (Interpreter.isTruthy(condition.execute())) return thenBranch.executeDouble();
+            return elseBranch.executeDouble();
+        }
+
+        @Override
+        void replaceChild(Node child, Node replacement) {
+            if (child == condition) condition = replacement;
+            else if (child == thenBranch) thenBranch = replacement;
+            else elseBranch = replacement;
+        }
+    }
+
+    abstract static class Binary extends Node {
+        final Token operator;
+        Node left;
+        Node right;
+
+        Binary(Token operator, Node left, Node right) {
+            this.operator = operator;
+            this.left = adopt(left);
+            this.right = adopt(right);
+        }
+
+        @Override
+        void replaceChild(Node child, Node replacement) {
+            if (child == left) left = replacement;
+            else right = replacement;
+        }
+
+        // Applies the operator to operand values that were already
+        // evaluated, which a node that just replaced itself needs.
+        abstract Object operate(Object leftValue, Object rightValue);
+
+        // Gives up on specializing: from now on this operator checks its
+        // operand types every time, like the Interpreter does.
+        Object generalize(Object leftValue, Object rightValue) {
+            return replace(new GenericBinary(operator, left, right))
+                    .operate(leftValue, rightValue);
+        }
+    }
+
+    static class UninitializedBinary extends Binary {
+        UninitializedBinary(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        Object execute() {
+            Object leftValue = left.execute();
+            return operate(leftValue, right.execute());
+        }
+
+        @Override
+        Object operate(Object leftValue, Object rightValue) {
+            Binary specialized = specialize(leftValue, rightValue);
+            if (specialized == null) {
+                return generalize(leftValue, rightValue);
+            }
+            return replace(specialized).operate(leftValue, rightValue);
+        }
+
+        private Binary specialize(Object leftValue, Object rightValue) {
+            boolean numbers = leftValue instanceof Double && rightValue instanceof Double;
+
+            switch (operator.type) {
+                case MINUS:
+                case SLASH:
+                case STAR:
+                    return numbers ? new NumberArithmetic(operator, left, right) : null;
+                case PLUS:
+                    if (numbers) return new NumberArithmetic(operator, left, right);
+                    if (leftValue instanceof String && rightValue instanceof String) {
+                        return new StringConcatenation(operator, left, right);
+                    }
+                    return null;
+                case GREATER:
+                case GREATER_EQUAL:
+                case LESS:
+                case LESS_EQUAL:
+                    return numbers ? new NumberComparison(operator, left, right) : null;
+                default:
+                    return null;
+            }
+        }
+    }
+
+    static class NumberArithmetic extends Binary {
+        NumberArithmetic(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        Object execute() {
+            try {
+                return executeDouble();
+            } catch (UnexpectedResult result) {
+                return result.value;
+            }
+        }
+
+        @Override
+        double executeDouble() {
+            double leftValue;
+            try {
+                leftValue = left.executeDouble();
+            } catch (UnexpectedResult result) {
+                return expectDouble(generalize(result.value, right.execute()));
+            }
+
+            double rightValue;
+            try {
+                rightValue = right.executeDouble();
+            } catch (UnexpectedResult result) {
+                return expectDouble(generalize(leftValue, result.value));
+            }
+
+            return arithmetic(operator.type, leftValue, rightValue);
+        }
+
+        private double expectDouble(Object value) {
+            if (value instanceof Double) return (double) value;
+            throw new UnexpectedResult(value);
+        }
+
+        @Override
+        Object operate(Object leftValue, Object rightValue) {
+            return arithmetic(operator.type, (double) leftValue, (double) rightValue);
+        }
+    }
+
+    static class NumberComparison extends Binary {
+        NumberComparison(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        Object execute() {
+            double leftValue;
+            try {
+                leftValue = left.executeDouble();
+            } catch (UnexpectedResult result) {
+                return generalize(result.value, right.execute());
+            }
+
+            double rightValue;
+            try {
+                rightValue = right.executeDouble();
+            } catch (UnexpectedResult result) {
+                return generalize(leftValue, result.value);
+            }
+
+            return compare(operator.type, leftValue, rightValue);
+        }
+
+        @Override
+        Object operate(Object leftValue, Object rightValue) {
+            return compare(operator.type, (double) leftValue, (double) rightValue);
+        }
+    }
+
+    static class StringConcatenation extends Binary {
+        StringConcatenation(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        Object execute() {
+            Object leftValue = left.execute();
+            return operate(leftValue, right.execute());
+        }
+
+        @Override
+        Object operate(Object leftValue, Object rightValue) {
+            if (leftValue instanceof String && rightValue instanceof String) {
+                return (String) leftValue + (String) rightValue;
+            }
+            return generalize(leftValue, rightValue);
+        }
+    }
+
+    static class GenericBinary extends Binary {
+        GenericBinary(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        Object execute() {
+            Object leftValue = left.execute();
+            return operate(leftValue, right.execute());
+        }
+
+        // The Interpreter's visitBinaryExpr, minus evaluating the operands.
+        @Override
+        Object operate(Object leftValue, Object rightValue) {
+            switch (operator.type) {
+                case GREATER:
+                case GREATER_EQUAL:
+                case LESS:
+                case LESS_EQUAL:
+                    checkNumberOperands(leftValue, rightValue);
+                    return compare(operator.type, (double) leftValue, (double) rightValue);
+                case BANG_EQUAL: return !Interpreter.isEqual(leftValue, rightValue);
+                case EQUAL_EQUAL: return Interpreter.isEqual(leftValue, rightValue);
+                case MINUS:
+                case SLASH:
+                case STAR:
+                    checkNumberOperands(leftValue, rightValue);
+                    return arithmetic(operator.type, (double) leftValue, (double) rightValue);
+                case PLUS:
+                    if (leftValue instanceof Double && rightValue instanceof Double) {
+                        return (double) leftValue + (double) rightValue;
+                    }
+
+                    if (leftValue instanceof String && rightValue instanceof String) {
+                        return (String) leftValue + (String) rightValue;
+                    }
+
+                    throw new RuntimeError(operator,
+                            "Operands must be two numbers or two strings.");
+            }
+
+            // Anything else, ',' included, comes up with nil.
+            return null;
+        }
+
+        private void checkNumberOperands(Object leftValue, Object rightValue) {
+            if (leftValue instanceof Double && rightValue instanceof Double) return;
+
+            throw new RuntimeError(operator, "Operands must be numbers.");
+        }
+    }
+
+    private static double arithmetic(TokenType operator, double left, double right) {
+        switch (operator) {
+            case MINUS: return left - right;
+            case PLUS: return left + right;
+            case SLASH: return left / right;
+            default: return left * right;
+        }
+    }
+
+    private static boolean compare(TokenType operator, double left, double right) {
+        switch (operator) {
+            case GREATER: return left > right;
+            case GREATER_EQUAL: return left >= right;
+            case LESS: return left < right;
+            default: return left <= right;
+        }
+    }
+}
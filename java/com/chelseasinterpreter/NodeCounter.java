@@ -0,0 +1,58 @@
+package com.chelseasinterpreter;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+// Counts the nodes in an expression tree.
+class NodeCounter implements Expr.Visitor<Integer> {
+    int count(Expr expr) {
+        if (expr == null) return 0;
+        return expr.accept(this);
+    }
+
+    // count() without the recursion, for trees too deep for the Java stack.
+    static int size(Expr expr) {
+        int size = 0;
+        Deque<Expr> pending = new ArrayDeque<>();
+        if (expr != null) pending.push(expr);
+        while (!pending.isEmpty()) {
+            Expr next = pending.pop();
+            size++;
+            for (int i = 0; i < next.childCount(); i++) {
+                Expr child = next.child(i);
+                if (child != null) pending.push(child);
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public Integer visitBinaryExpr(Expr.Binary expr) {
+        return 1 + count(expr.left) + count(expr.right);
+    }
+
+    @Override
+    public Integer visitGroupingExpr(Expr.Grouping expr) {
+        return 1 + count(expr.expression);
+    }
+
+    @Override
+    public Integer visitLiteralExpr(Expr.Literal expr) {
+        return 1;
+    }
+
+    @Override
+    public Integer visitUnaryExpr(Expr.Unary expr) {
+        return 1 + count(expr.right);
+    }
+
+    @Override
+    public Integer visitConditionalExpr(Expr.Conditional expr) {
+        return 1 + count(expr.condition) + count(expr.thenBranch) + count(expr.elseBranch);
+    }
+
+    @Override
+    public Integer visitErrorExpr(Expr.Error expr) {
+        return 1;
+    }
+}
@@ -0,0 +1,97 @@
+package com.chelseasinterpreter;
+
+// Folds constant subtrees into literals between parsing and interpreting.
+// Anything whose operands are all literals gets evaluated once, here, by
+// the same Interpreter code that would have evaluated it at runtime, so
+// the folded value is exactly what the program would have produced. If
+// that evaluation throws a RuntimeError the subtree is left alone and
+// the error happens at runtime as before.
+class Optimizer implements Expr.Visitor<Expr> {
+    private final Interpreter evaluator = new Interpreter();
+    private final NodeCounter counter = new NodeCounter();
+    private int eliminatedNodes = 0;
+
+    Expr optimize(Expr expr) {
+        if (expr == null) return null;
+
+        Expr optimized = expr.accept(this);
+        eliminatedNodes += counter.count(expr) - counter.count(optimized);
+        return optimized;
+    }
+
+    // Across every optimize() call so far.
+    int eliminatedNodes() {
+        return eliminatedNodes;
+    }
+
+    @Override
+    public Expr visitBinaryExpr(Expr.Binary expr) {
+        Expr left = expr.left.accept(this);
+        Expr right = expr.right.accept(this);
+
+        Expr folded = (left == expr.left && right == expr.right)
+                ? expr
+                : new Expr.Binary(left, expr.operator, right);
+        if (left instanceof Expr.Literal && right instanceof Expr.Literal) {
+            return fold(folded);
+        }
+        return folded;
+    }
+
+    @Override
+    public Expr visitGroupingExpr(Expr.Grouping expr) {
+        Expr inner = expr.expression.accept(this);
+
+        // Parentheses around a value don't do anything at runtime.
+        if (inner instanceof Expr.Literal) return inner;
+        if (inner == expr.expression) return expr;
+        return new Expr.Grouping(inner);
+    }
+
+    @Override
+    public Expr visitLiteralExpr(Expr.Literal expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitUnaryExpr(Expr.Unary expr) {
+        Expr right = expr.right.accept(this);
+
+        Expr folded = right == expr.right ? expr : new Expr.Unary(expr.operator, right);
+        if (right instanceof Expr.Literal) {
+            return fold(folded);
+        }
+        return folded;
+    }
+
+    @Override
+    public Expr visitConditionalExpr(Expr.Conditional expr) {
+        Expr condition = expr.condition.accept(this);
+        Expr thenBranch = expr.thenBranch.accept(this);
+        Expr elseBranch = expr.elseBranch.accept(this);
+
+        // Only the branch a constant condition picks could ever run.
+        if (condition instanceof Expr.Literal) {
+            Object value = ((Expr.Literal) condition).value;
+            return Interpreter.isTruthy(value) ? thenBranch : elseBranch;
+        }
+
+        if (condition == expr.condition && thenBranch == expr.thenBranch && elseBranch == expr.elseBranch) {
+            return expr;
+        }
+        return new Expr.Conditional(condition, thenBranch, elseBranch);
+    }
+
+    @Override
+    public Expr visitErrorExpr(Expr.Error expr) {
+        return expr;
+    }
+
+    private Expr fold(Expr expr) {
+        try {
+            return new Expr.Literal(evaluator.evaluate(expr));
+        } catch (RuntimeError error) {
+            return expr;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.chelseasinterpreter;
+
+// Where the interpreters send the values they print, one per line.
+// Sinks may hold on to output until flush(), so callers flush when they
+// are done and before reporting an error, to keep the two in order.
+// standardOutput() may be shared between threads; other sinks can't be.
+public interface OutputSink {
+    void write(Object value);
+
+    void flush();
+
+    // Buffered standard output, shared and flushed at exit.
+    static OutputSink standardOutput() {
+        return BufferedOutputSink.STANDARD_OUTPUT;
+    }
+}
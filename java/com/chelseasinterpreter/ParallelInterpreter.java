@@ -0,0 +1,158 @@
+package com.chelseasinterpreter;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Evaluates wide expressions on a ForkJoinPool. prepare() sizes every
+// subtree once and marks the Binary nodes whose operands both have at
+// least threshold nodes. Evaluating one of those forks its left operand
+// off as a task and evaluates the right one meanwhile. Those nodes and
+// their ancestors make up the spine; any subtree off the spine goes to a
+// plain Interpreter and runs at full speed. Expressions have no side effects, so
+// evaluating the right operand early can't be seen, except in errors:
+// when both sides fail, the left one's error is reported, which is the
+// one the sequential Interpreter would have stopped at.
+class ParallelInterpreter {
+    static final int DEFAULT_THRESHOLD = 1024;
+
+    private final ForkJoinPool pool;
+    private final OutputSink output;
+    private final ErrorReporter errors;
+
+    ParallelInterpreter(ForkJoinPool pool, OutputSink output, ErrorReporter errors) {
+        this.pool = pool;
+        this.output = output;
+        this.errors = errors;
+    }
+
+    static final class Prepared {
+        final Expr expression;
+        private final Set<Expr> forkPoints;
+        private final Set<Expr> spine;
+
+        private Prepared(Expr expression, Set<Expr> forkPoints, Set<Expr> spine) {
+            this.expression = expression;
+            this.forkPoints = forkPoints;
+            this.spine = spine;
+        }
+    }
+
+    Prepared prepare(Expr expr, int threshold) {
+        // By identity: two equal subtrees are still two places to fork.
+        Set<Expr> forkPoints = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<Expr> spine = Collections.newSetFromMap(new IdentityHashMap<>());
+        new NodeCounter() {
+            @Override
+            int count(Expr subtree) {
+                int spineBelow = spine.size();
+                int size = super.count(subtree);
+                if (spine.size() > spineBelow) spine.add(subtree);
+                return size;
+            }
+
+            @Override
+            public Integer visitBinaryExpr(Expr.Binary binary) {
+                int left = count(binary.left);
+                int right = count(binary.right);
+                if (left >= threshold && right >= threshold) {
+                    forkPoints.add(binary);
+                    spine.add(binary);
+                }
+                return 1 + left + right;
+            }
+        }.count(expr);
+
+        return new Prepared(expr, forkPoints, spine);
+    }
+
+    void interpret(Prepared prepared) {
+        try {
+            Object value = evaluate(prepared);
+            output.write(value);
+        } catch (RuntimeError error) {
+            output.flush();
+            errors.runtimeError(error);
+        }
+    }
+
+    Object evaluate(Prepared prepared) {
+        Evaluation evaluation = new Evaluation(prepared, prepared.expression);
+        pool.invoke(evaluation);
+        return evaluation.result();
+    }
+
+    // One subtree, evaluated on whichever worker picks it up. A
+    // RuntimeError is kept rather than thrown through the pool, so it
+    // comes back as itself and only once the task is joined.
+    private static class Evaluation extends RecursiveTask<Object> {
+        private final Prepared prepared;
+        private final Expr expr;
+        private RuntimeError error;
+
+        Evaluation(Prepared prepared, Expr expr) {
+            this.prepared = prepared;
+            this.expr = expr;
+        }
+
+        @Override
+        protected Object compute() {
+            try {
+                return new Forking(prepared).evaluate(expr);
+            } catch (RuntimeError error) {
+                this.error = error;
+                return null;
+            }
+        }
+
+        Object result() {
+            Object value = join();
+            if (error != null) throw error;
+            return value;
+        }
+    }
+
+    // Walks the spine, forking at its fork points. Numbers stay boxed on
+    // the spine; it's short, and the unboxed path would walk around the
+    // fork points. An Interpreter of its own per task, since an
+    // Interpreter keeps scratch state.
+    private static class Forking extends Interpreter {
+        private final Prepared prepared;
+        private final Interpreter offSpine = new Interpreter();
+
+        Forking(Prepared prepared) {
+            this.prepared = prepared;
+        }
+
+        @Override
+        Object evaluate(Expr expr) {
+            if (!prepared.spine.contains(expr)) return offSpine.evaluate(expr);
+            return expr.accept(this);
+        }
+
+        @Override
+        boolean unboxesNumbers() {
+            return false;
+        }
+
+        @Override
+        public Object visitBinaryExpr(Expr.Binary expr) {
+            if (!prepared.forkPoints.contains(expr)) return super.visitBinaryExpr(expr);
+
+            Evaluation left = new Evaluation(prepared, expr.left);
+            left.fork();
+
+            Object right;
+            try {
+                right = evaluate(expr.right);
+            } catch (RuntimeError error) {
+                // The left operand's error, if it has one, comes first.
+                left.result();
+                throw error;
+            }
+            return operate(expr.operator, left.result(), right);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.chelseasinterpreter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static com.chelseasinterpreter.TokenType.EOF;
+
+// Scans a big source on a ForkJoinPool, with the same tokens and errors
+// as Scanner.scanTokens(). The source is cut into pieces just after a
+// newline, and each piece is scanned on its own from line 1, as if it
+// started in between two tokens. That guess is wrong for a piece that
+// starts inside a string or a comment, so the pieces are stitched back
+// together in order by a scanner that knows where it really is: it scans
+// for real from the end of the last piece it took until it makes a token
+// that starts where one of the next piece's tokens does. Both scanners
+// were in between tokens there, so from that token on the piece's tokens
+// are right, just on lines counted from the wrong place, and the rest of
+// the piece is taken with its lines moved along. A piece whose scan ran
+// into an error or threw is scanned for real instead, so errors come out
+// of the one scanner, in order. Building the Token objects for the pieces
+// taken is the bulk of the work, and that goes back on the pool.
+class ParallelScanner {
+    static final int DEFAULT_PIECE_SIZE = 1 << 16;
+
+    private final ForkJoinPool pool;
+    private final int pieceSize;
+
+    ParallelScanner(ForkJoinPool pool) {
+        this(pool, DEFAULT_PIECE_SIZE);
+    }
+
+    ParallelScanner(ForkJoinPool pool, int pieceSize) {
+        this.pool = pool;
+        this.pieceSize = Math.max(1, pieceSize);
+    }
+
+    List<Token> scanTokens(CharSequence source, ErrorReporter errors) {
+        List<Piece> pieces = cut(source);
+        if (pieces.size() == 1) return new Scanner(source, errors).scanTokens();
+
+        for (Piece piece : pieces) pool.execute(piece);
+        for (Piece piece : pieces) piece.join();
+
+        Scanner scanner = new Scanner(source, errors);
+        LineIndex lines = scanner.lineIndex();
+        int current = 0;
+        Token token;
+        while ((token = scanner.nextToken()).type != EOF) {
+            while (current + 1 < pieces.size() && token.start >= pieces.get(current + 1).from) current++;
+
+            Piece piece = pieces.get(current);
+            piece.scanned.add(token);
+            int match = piece.find(token.start);
+            if (match < 0) continue;
+
+            piece.takeFrom = match + 1;
+            piece.lineDelta = token.line - piece.tokens.line(match);
+            LineIndex pieceLines = piece.lines;
+            for (int line = 2; line <= pieceLines.lineCount(); line++) {
+                if (pieceLines.lineStart(line) > token.end) lines.addLine(pieceLines.lineStart(line));
+            }
+            scanner.resumeAt(piece.stop, piece.stopLine + piece.lineDelta);
+        }
+
+        int size = 0;
+        for (Piece piece : pieces) {
+            piece.at = size;
+            size += piece.scanned.size() + piece.taken();
+        }
+
+        Token[] tokens = new Token[size + 1];
+        tokens[size] = token;
+        List<Build> builds = new ArrayList<>(pieces.size());
+        for (Piece piece : pieces) builds.add(new Build(piece, tokens, lines));
+        for (Build build : builds) pool.execute(build);
+        for (Build build : builds) build.join();
+        return Arrays.asList(tokens);
+    }
+
+    // Each piece but the first starts just after a newline, unless there
+    // isn't one close enough to where it would have been cut.
+    private List<Piece> cut(CharSequence source) {
+        int length = source.length();
+        List<Integer> starts = new ArrayList<>();
+        starts.add(0);
+        for (int cut = pieceSize; cut < length; cut += pieceSize) {
+            int from = cut;
+            int last = Math.min(length, cut + pieceSize / 2);
+            while (from < last && source.charAt(from - 1) != '\n') from++;
+            if (from == last) from = cut;
+            if (from > starts.get(starts.size() - 1) && from < length) starts.add(from);
+        }
+
+        List<Piece> pieces = new ArrayList<>(starts.size());
+        for (int i = 0; i < starts.size(); i++) {
+            int limit = i + 1 < starts.size() ? starts.get(i + 1) : length;
+            pieces.add(new Piece(source, starts.get(i), limit));
+        }
+        return pieces;
+    }
+
+    private static final class Piece extends RecursiveAction {
+        private final CharSequence source;
+        final int from;
+        private final int limit;
+
+        // What scanning the piece on its own found, if it went cleanly.
+        private boolean failed = false;
+        TokenStore tokens;
+        LineIndex lines;
+        int stop;
+        int stopLine;
+
+        // What the stitch made of it: the tokens scanned for real in front
+        // of the ones taken, and where the taken ones start.
+        final List<Token> scanned = new ArrayList<>();
+        int takeFrom = -1;
+        int lineDelta = 0;
+        int at = 0;
+        private int searched = 0;
+
+        Piece(CharSequence source, int from, int limit) {
+            this.source = source;
+            this.from = from;
+            this.limit = limit;
+        }
+
+        @Override
+        protected void compute() {
+            Scanner scanner = new Scanner(source, new ErrorReporter() {
+                @Override
+                public void error(int line, int column, String message) {
+                    failed = true;
+                }
+
+                @Override
+                public void error(Token token, String message) {
+                    failed = true;
+                }
+
+                @Override
+                public void runtimeError(RuntimeError error) {
+                    failed = true;
+                }
+            });
+            scanner.resumeAt(from, 1);
+
+            try {
+                tokens = scanner.scanCompact(limit);
+            } catch (RuntimeException error) {
+                // Most likely a number cut out of the middle of something
+                // else. Scanned for real, it throws where it should, if at all.
+                failed = true;
+                return;
+            }
+            lines = scanner.lineIndex();
+            stop = scanner.offset();
+            stopLine = scanner.line();
+        }
+
+        // The token that starts at offset, or -1. The stitch asks with
+        // offsets that only go up, so the search carries on from the last.
+        int find(int offset) {
+            if (failed) return -1;
+            while (searched < tokens.size() && tokens.start(searched) < offset) searched++;
+            return searched < tokens.size() && tokens.start(searched) == offset ? searched : -1;
+        }
+
+        int taken() {
+            return takeFrom < 0 ? 0 : tokens.size() - takeFrom;
+        }
+    }
+
+    private static final class Build extends RecursiveAction {
+        private final Piece piece;
+        private final Token[] tokens;
+        private final LineIndex lines;
+
+        Build(Piece piece, Token[] tokens, LineIndex lines) {
+            this.piece = piece;
+            this.tokens = tokens;
+            this.lines = lines;
+        }
+
+        @Override
+        protected void compute() {
+            int at = piece.at;
+            for (Token token : piece.scanned) tokens[at++] = token;
+
+            TokenStore store = piece.tokens;
+            for (int i = piece.takeFrom; i >= 0 && i < store.size(); i++) {
+                tokens[at++] = new Token(store.type(i), store.lexeme(i), store.literal(i),
+                        store.line(i) + piece.lineDelta, store.start(i), store.end(i), lines);
+            }
+        }
+    }
+}
@@ -1,25 +1,84 @@
 package com.chelseasinterpreter;
 
+import java.util.Arrays;
 import java.util.List;
 
 import static com.chelseasinterpreter.TokenType.*;
 
 class Parser {
-    private static class ParseError extends RuntimeException {
+    private final TokenBuffer tokens;
+    private final ErrorReporter errors;
+    private boolean recovering = false;
+    private Token lastError = null;
+
+    public Parser(List<Token> tokens) {
+        this(tokens.iterator()::next);
     }
 
-    private final List<Token> tokens;
-    private int cursorIndex = 0;
+    public Parser(TokenSource source) {
+        this(source, ErrorReporter.standardError());
+    }
 
-    public Parser(List<Token> tokens) {
-        this.tokens = tokens;
+    Parser(TokenSource source, ErrorReporter errors) {
+        this.tokens = new TokenBuffer(source);
+        this.errors = errors;
+    }
+
+    // Forgets the tokens seen so far, for when the source has been reset
+    // to something new.
+    void reset() {
+        tokens.reset();
+    }
+
+    // Recovering, the parser reports every syntax error it can find in one
+    // pass, tokens after the end of the expression included, and hands
+    // back what it could parse with an Expr.Error wherever something
+    // didn't, instead of null.
+    void setRecovering(boolean recovering) {
+        this.recovering = recovering;
     }
 
     Expr parse() {
+        return parse(false);
+    }
+
+    // The same grammar, errors and trees as parse(), worked through on a
+    // stack of its own, so nesting is limited by the heap rather than by
+    // the Java stack.
+    Expr parseIteratively() {
+        return parse(true);
+    }
+
+    private Expr parse(boolean iteratively) {
         try {
-            return expression();
-        } catch (Throwable error) {
+            Expr expr = iteratively ? new Frames().expression() : expression();
+            if (recovering) expectEnd(iteratively);
+            return expr;
+        } catch (StackOverflowError error) {
+            // Nested deeper than the Java stack has room for. Reported
+            // whether recovering or not, since there's no tree to go on with.
+            errors.error(nextToken(), "Expression nested too deeply; try --iterative.");
             return null;
+        } finally {
+            // Pull the rest of the source through, so the scanner still
+            // reports errors that come after the end of the expression.
+            tokens.skipToEnd();
+        }
+    }
+
+    // Whatever is left is an error too. After a ';', the next expression
+    // is parsed for the errors in it, and then thrown away.
+    private void expectEnd(boolean iteratively) {
+        while (!isAtEnd()) {
+            error(nextToken(), "Expect end of expression.");
+            synchronize();
+            if (isAtEnd() || previousToken().type != SEMICOLON) continue;
+
+            if (iteratively) {
+                new Frames().expression();
+            } else {
+                expression();
+            }
         }
     }
 
@@ -117,38 +176,37 @@ class Parser {
 
         if (consuming(LEFT_PAREN)) {
             Expr expr = expression();
-            consume(RIGHT_PAREN, "Expect ')' after expression.");
+            closeGroup();
 
             return new Expr.Grouping(expr);
         }
 
         // Error productions.
         if (consuming(BANG_EQUAL, EQUAL_EQUAL)) {
-            error(previousToken(), "Missing left-hand operand.");
+            Expr missing = failed(previousToken(), "Missing left-hand operand.");
             equality();
-            return null;
+            return missing;
         }
 
         if (consuming(GREATER, GREATER_EQUAL, LESS, LESS_EQUAL)) {
-            error(previousToken(), "Missing left-hand operand.");
+            Expr missing = failed(previousToken(), "Missing left-hand operand.");
             comparison();
-            return null;
+            return missing;
         }
 
         if (consuming(PLUS)) {
-            error(previousToken(), "Missing left-hand operand.");
+            Expr missing = failed(previousToken(), "Missing left-hand operand.");
             addition();
-            return null;
+            return missing;
         }
 
         if (consuming(SLASH, STAR)) {
-            error(previousToken(), "Missing left-hand operand.");
+            Expr missing = failed(previousToken(), "Missing left-hand operand.");
             multiplication();
-            return null;
+            return missing;
         }
 
-        error(nextToken(), "Expect expression.");
-        return null;
+        return failed(nextToken(), "Expect expression.");
     }
 
     private Token consume(TokenType expectedType, String errorMessage) {
@@ -162,6 +220,24 @@ class Parser {
     }
 
 
+    // Recovering, a group missing its ')' skips ahead to the ')' that would
+    // have closed it, so what is in the way doesn't set off errors of its
+    // own. It stops short at a ';', where expectEnd() picks up.
+    private void closeGroup() {
+        if (consume(RIGHT_PAREN, "Expect ')' after expression.") != null || !recovering) return;
+
+        int depth = 0;
+        while (!isAtEnd() && !nextTokenIsA(SEMICOLON)) {
+            TokenType type = nextToken().type;
+            advance();
+            if (type == LEFT_PAREN) {
+                depth++;
+            } else if (type == RIGHT_PAREN && depth-- == 0) {
+                return;
+            }
+        }
+    }
+
     private boolean consuming(TokenType... types) {
         for (TokenType type : types) {
             if (nextTokenIsA(type)) {
@@ -179,7 +255,7 @@ class Parser {
     }
 
     private void advance() {
-        if (!isAtEnd()) cursorIndex++;
+        if (!isAtEnd()) tokens.advance();
     }
 
     private boolean isAtEnd() {
@@ -187,16 +263,210 @@ class Parser {
     }
 
     private Token nextToken() {
-        return tokens.get(cursorIndex);
+        return tokens.peek(0);
     }
 
     private Token previousToken() {
-        return tokens.get(cursorIndex - 1);
+        return tokens.peek(-1);
+    }
+
+    // Errors are reported and parsing carries on; what couldn't be parsed
+    // is left null, or an Expr.Error when recovering.
+    private void error(Token token, String message) {
+        // Recovering, a second error at the same token would only be a
+        // knock-on from the first.
+        if (!recovering || token != lastError) errors.error(token, message);
+        lastError = token;
     }
 
-    private ParseError error(Token token, String message) {
-        Lox.error(token, message);
-        return new ParseError();
+    // What is left where something didn't parse.
+    private Expr failed(Token token, String message) {
+        error(token, message);
+        return recovering ? new Expr.Error(token, message) : null;
+    }
+
+    // parseIteratively's call stack. Each frame is one of the methods above
+    // partway through: kind says which, state where it got to. A method
+    // "calls" another by pushing its frame and "returns" by popping its
+    // own and leaving what it parsed in result.
+    private class Frames {
+        private static final int BLOCK = 0;
+        private static final int CONDITIONAL = 1;
+        private static final int EQUALITY = 2;
+        private static final int COMPARISON = 3;
+        private static final int ADDITION = 4;
+        private static final int MULTIPLICATION = 5;
+        private static final int UNARY = 6;
+        private static final int PRIMARY = 7;
+
+        // By kind, for the binary levels: what each one loops on and what
+        // its operands are.
+        private final TokenType[][] operators = {
+                {COMMA}, null, {BANG_EQUAL, EQUAL_EQUAL},
+                {GREATER, GREATER_EQUAL, LESS, LESS_EQUAL}, {MINUS, PLUS}, {STAR, SLASH}
+        };
+        private final int[] operands = {CONDITIONAL, -1, COMPARISON, ADDITION, MULTIPLICATION, UNARY};
+
+        private int[] kinds = new int[32];
+        private int[] states = new int[32];
+        private Expr[] lefts = new Expr[32];
+        private Token[] tokens = new Token[32];
+        private Expr[] thenBranches = new Expr[32];
+        private int size = 0;
+
+        private Expr result = null;
+
+        Expr expression() {
+            push(BLOCK);
+
+            while (size > 0) {
+                int top = size - 1;
+                switch (kinds[top]) {
+                    case CONDITIONAL: conditional(top); break;
+                    case UNARY: unary(top); break;
+                    case PRIMARY: primary(top); break;
+                    default: binary(top);
+                }
+            }
+            return result;
+        }
+
+        private void binary(int top) {
+            int kind = kinds[top];
+            switch (states[top]) {
+                case 0:
+                    states[top] = 1;
+                    push(operands[kind]);
+                    return;
+                case 2:
+                    result = new Expr.Binary(lefts[top], tokens[top], result);
+                    break;
+            }
+
+            if (consuming(operators[kind])) {
+                lefts[top] = result;
+                tokens[top] = previousToken();
+                states[top] = 2;
+                push(operands[kind]);
+                return;
+            }
+            pop();
+        }
+
+        private void conditional(int top) {
+            switch (states[top]) {
+                case 0:
+                    states[top] = 1;
+                    push(EQUALITY);
+                    return;
+                case 1:
+                    if (!consuming(QUESTION_MARK)) {
+                        pop();
+                        return;
+                    }
+                    lefts[top] = result;
+                    states[top] = 2;
+                    push(BLOCK);
+                    return;
+                case 2:
+                    thenBranches[top] = result;
+                    consume(COLON, "Expect ':' after then branch of conditional expression.");
+                    states[top] = 3;
+                    push(CONDITIONAL);
+                    return;
+                default:
+                    result = new Expr.Conditional(lefts[top], thenBranches[top], result);
+                    pop();
+            }
+        }
+
+        private void unary(int top) {
+            if (states[top] == 1) {
+                result = new Expr.Unary(tokens[top], result);
+                pop();
+                return;
+            }
+
+            if (consuming(BANG, MINUS)) {
+                tokens[top] = previousToken();
+                states[top] = 1;
+                push(PRIMARY);
+                return;
+            }
+
+            // Nothing left to do here once primary returns.
+            kinds[top] = PRIMARY;
+        }
+
+        private void primary(int top) {
+            switch (states[top]) {
+                case 1:
+                    closeGroup();
+                    result = new Expr.Grouping(result);
+                    pop();
+                    return;
+                case 2:
+                    // What an error production parsed gets thrown away.
+                    result = lefts[top];
+                    pop();
+                    return;
+            }
+
+            if (consuming(FALSE)) {
+                returning(new Expr.Literal(false));
+            } else if (consuming(TRUE)) {
+                returning(new Expr.Literal(true));
+            } else if (consuming(NIL)) {
+                returning(new Expr.Literal(null));
+            } else if (consuming(NUMBER, STRING)) {
+                returning(new Expr.Literal(previousToken().literal));
+            } else if (consuming(LEFT_PAREN)) {
+                states[top] = 1;
+                push(BLOCK);
+            } else if (consuming(BANG_EQUAL, EQUAL_EQUAL)) {
+                missingLeftHandOperand(top, EQUALITY);
+            } else if (consuming(GREATER, GREATER_EQUAL, LESS, LESS_EQUAL)) {
+                missingLeftHandOperand(top, COMPARISON);
+            } else if (consuming(PLUS)) {
+                missingLeftHandOperand(top, ADDITION);
+            } else if (consuming(SLASH, STAR)) {
+                missingLeftHandOperand(top, MULTIPLICATION);
+            } else {
+                returning(failed(nextToken(), "Expect expression."));
+            }
+        }
+
+        private void missingLeftHandOperand(int top, int rest) {
+            lefts[top] = failed(previousToken(), "Missing left-hand operand.");
+            states[top] = 2;
+            push(rest);
+        }
+
+        private void returning(Expr expr) {
+            result = expr;
+            pop();
+        }
+
+        private void push(int kind) {
+            if (size == kinds.length) {
+                int capacity = size * 2;
+                kinds = Arrays.copyOf(kinds, capacity);
+                states = Arrays.copyOf(states, capacity);
+                lefts = Arrays.copyOf(lefts, capacity);
+                tokens = Arrays.copyOf(tokens, capacity);
+                thenBranches = Arrays.copyOf(thenBranches, capacity);
+            }
+            kinds[size] = kind;
+            states[size] = 0;
+            size++;
+        }
+
+        private void pop() {
+            size--;
+            lefts[size] = null;
+            tokens[size] = null;
+            thenBranches[size] = null;
+        }
     }
 
     private void synchronize() {
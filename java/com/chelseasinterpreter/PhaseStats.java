@@ -0,0 +1,37 @@
+package com.chelseasinterpreter;
+
+// What one phase of one LoxEngine.run cost. tokens and nodes are the totals
+// known when the phase finished, or -1 before they are known.
+// allocatedBytes is -1 when the JVM can't measure per-thread allocation.
+public class PhaseStats {
+    public final int run;
+    public final String phase;
+    public final long wallNanos;
+    public final long allocatedBytes;
+    public final int tokens;
+    public final int nodes;
+
+    PhaseStats(int run, String phase, long wallNanos, long allocatedBytes, int tokens, int nodes) {
+        this.run = run;
+        this.phase = phase;
+        this.wallNanos = wallNanos;
+        this.allocatedBytes = allocatedBytes;
+        this.tokens = tokens;
+        this.nodes = nodes;
+    }
+
+    // One line of JSON, for JSON-lines output.
+    public String toJson() {
+        return "{\"run\":" + run +
+                ",\"phase\":\"" + phase + "\"" +
+                ",\"wallNanos\":" + wallNanos +
+                ",\"allocatedBytes\":" + allocatedBytes +
+                ",\"tokens\":" + tokens +
+                ",\"nodes\":" + nodes + "}";
+    }
+
+    @Override
+    public String toString() {
+        return toJson();
+    }
+}
@@ -0,0 +1,8 @@
+package com.chelseasinterpreter;
+
+// Hears about each phase of LoxEngine.run as it finishes. Registering one
+// turns the instrumentation on; with none registered, nothing is
+// measured.
+public interface PipelineListener {
+    void phaseFinished(PhaseStats stats);
+}
@@ -0,0 +1,129 @@
+package com.chelseasinterpreter;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+
+// Measures the phases of one LoxEngine.run and hands each to the listeners.
+// Scanning and parsing happen in one pass, timed as a whole. Timing every
+// token would cost more than scanning it, so only one token in
+// SAMPLE_INTERVAL is timed, the scanner's share of the pass is estimated
+// from those, and the parse phase gets whatever is left over. The interval
+// is prime so it doesn't keep landing on the same token of a repeating
+// pattern, and a sample a garbage collection ran during is dropped rather
+// than blown up to stand for SAMPLE_INTERVAL tokens.
+class PipelineStats {
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private static final List<GarbageCollectorMXBean> collectors =
+            ManagementFactory.getGarbageCollectorMXBeans();
+    private static final int SAMPLE_INTERVAL = 61;
+
+    private final List<PipelineListener> listeners;
+    private final boolean enabled;
+    private final int run;
+
+    private long phaseStartNanos;
+    private long phaseStartBytes;
+    private long sampledNanos = 0;
+    private long sampledBytes = 0;
+    private int samples = 0;
+    private int tokens = -1;
+    private int nodes = -1;
+
+    // run numbers the runs of one LoxEngine; it's only counted while
+    // someone is listening.
+    PipelineStats(List<PipelineListener> listeners, int run) {
+        this.listeners = listeners;
+        this.enabled = !listeners.isEmpty();
+        this.run = run;
+    }
+
+    TokenSource scanning(TokenSource source) {
+        if (!enabled) return source;
+
+        tokens = 0;
+        return () -> {
+            // Not the first token, which pays for getting the scanner going.
+            if (tokens++ % SAMPLE_INTERVAL != 1) return source.nextToken();
+
+            long startCollections = collections();
+            long startBytes = allocatedBytes();
+            long startNanos = System.nanoTime();
+            Token token = source.nextToken();
+            long nanos = System.nanoTime() - startNanos;
+            long bytes = allocatedBytes() - startBytes;
+            if (collections() == startCollections) {
+                sampledNanos += nanos;
+                sampledBytes += bytes;
+                samples++;
+            }
+            return token;
+        };
+    }
+
+    void start() {
+        if (!enabled) return;
+
+        phaseStartBytes = allocatedBytes();
+        phaseStartNanos = System.nanoTime();
+    }
+
+    void finishScanAndParse(Expr expression) {
+        if (!enabled) return;
+
+        long nanos = System.nanoTime() - phaseStartNanos;
+        long bytes = allocatedBytes() - phaseStartBytes;
+        long scanNanos = Math.min(nanos, estimate(sampledNanos));
+        long scanBytes = Math.min(bytes, estimate(sampledBytes));
+        report("scan", scanNanos, phaseStartBytes < 0 ? -1 : scanBytes);
+        nodes = NodeCounter.size(expression);
+        report("parse", nanos - scanNanos, phaseStartBytes < 0 ? -1 : bytes - scanBytes);
+    }
+
+    void finish(String phase) {
+        if (!enabled) return;
+
+        long nanos = System.nanoTime() - phaseStartNanos;
+        long bytes = phaseStartBytes < 0 ? -1 : allocatedBytes() - phaseStartBytes;
+        report(phase, nanos, bytes);
+    }
+
+    void finish(String phase, Expr expression) {
+        if (!enabled) return;
+
+        long nanos = System.nanoTime() - phaseStartNanos;
+        long bytes = phaseStartBytes < 0 ? -1 : allocatedBytes() - phaseStartBytes;
+        nodes = NodeCounter.size(expression);
+        report(phase, nanos, bytes);
+    }
+
+    // What all the tokens cost, going by the ones that were timed.
+    private long estimate(long sampled) {
+        return samples == 0 ? 0 : sampled * tokens / samples;
+    }
+
+    private void report(String phase, long nanos, long bytes) {
+        PhaseStats stats = new PhaseStats(run, phase, nanos, bytes, tokens, nodes);
+        for (PipelineListener listener : listeners) {
+            listener.phaseFinished(stats);
+        }
+    }
+
+    private static long collections() {
+        long collections = 0;
+        for (GarbageCollectorMXBean collector : collectors) collections += collector.getCollectionCount();
+        return collections;
+    }
+
+    private static long allocatedBytes() {
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) return -1;
+
+        com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) threads;
+        if (!allocation.isThreadAllocatedMemorySupported() ||
+                !allocation.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        return allocation.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -27,7 +27,7 @@ class RpnPrinter implements Expr.Visitor<String> {
 
     @Override
     public String visitGroupingExpr(Expr.Grouping expr) {
-        return expr.accept(this);
+        return expr.expression.accept(this);
     }
 
     @Override
@@ -46,5 +46,10 @@ class RpnPrinter implements Expr.Visitor<String> {
         return expr.thenBranch.accept(this) + ":" + expr.elseBranch.accept(this) + "?";
     }
 
+    @Override
+    public String visitErrorExpr(Expr.Error expr) {
+        return "error";
+    }
+
 
 }
\ No newline at end of file
@@ -1,10 +1,13 @@
 package com.chelseasinterpreter;
 
+// No stack trace: the token says where in the Lox source it happened,
+// which is all anyone reports, and a run full of them shouldn't pay to
+// record where in the interpreter each one was thrown.
 class RuntimeError extends RuntimeException {
     final Token token;
 
     RuntimeError(Token token, String message) {
-        super(message);
+        super(message, null, false, false);
         this.token = token;
     }
 }
\ No newline at end of file
@@ -1,93 +1,177 @@
 package com.chelseasinterpreter;
 
+import java.io.Reader;
 import java.util.ArrayList;
-import java.util.Set;
-import java.util.HashSet;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import static com.chelseasinterpreter.TokenType.*;
 
-class Scanner {
-    private final String source;
-    private final List<Token> tokens = new ArrayList<>();
+class Scanner implements TokenSource {
+    private SourceWindow source;
+    private final ErrorReporter errors;
+    private Token scannedToken = null;
+    private TokenStore compactTokens = null;
 
     private int start = 0;
     private int cursorIndex = 0;
     private int line = 1;
+    private LineIndex lines = new LineIndex();
 
-    public Scanner(String source) {
-        this.source = source;
+    public Scanner(CharSequence source) {
+        this(source, ErrorReporter.standardError());
+    }
+
+    Scanner(CharSequence source, ErrorReporter errors) {
+        this.source = new SourceWindow(source);
+        this.errors = errors;
+    }
+
+    // Streams the source instead of holding all of it in memory.
+    public Scanner(Reader reader) {
+        this(reader, ErrorReporter.standardError());
+    }
+
+    Scanner(Reader reader, ErrorReporter errors) {
+        this.source = new SourceWindow(reader);
+        this.errors = errors;
+    }
+
+    // Starts over on another source, so one Scanner can serve a whole
+    // batch. The LineIndex is new each time: tokens already handed out
+    // still point at the old one for their columns.
+    void reset(CharSequence source) {
+        this.source = new SourceWindow(source);
+        scannedToken = null;
+        compactTokens = null;
+        start = 0;
+        cursorIndex = 0;
+        line = 1;
+        lines = new LineIndex();
+    }
+
+    // Carries on from offset, where a token ended when the same text was
+    // scanned before, on the line that scan was on there. For re-scanning
+    // just the part of a source an edit changed. The lines before offset
+    // never make it into this scanner's LineIndex, so the columns of its
+    // tokens are off.
+    void resumeAt(int offset, int line) {
+        start = offset;
+        cursorIndex = offset;
+        this.line = line;
     }
 
     List<Token> scanTokens() {
+        List<Token> tokens = new ArrayList<>();
+        Token token;
+        do {
+            token = nextToken();
+            tokens.add(token);
+        } while (token.type != EOF);
+
+        return tokens;
+    }
+
+    // Scans the whole source into a TokenStore instead of Token objects.
+    // The store cuts lexemes out of the source only when asked, so the
+    // source has to stay in memory; a Scanner over a Reader can't do this.
+    TokenStore scanCompact() {
+        TokenStore tokens = scanCompact(Integer.MAX_VALUE);
+        int length = source.text().length();
+        tokens.add(EOF, length, length, line);
+        return tokens;
+    }
+
+    // Scans compactly up to limit: every token that starts before it, the
+    // last of which may run past it, and no EOF. offset() and line() then
+    // say where the next token would start. For scanning a source in
+    // pieces; see ParallelScanner.
+    TokenStore scanCompact(int limit) {
+        CharSequence text = source.text();
+        if (text == null) {
+            throw new IllegalStateException("Compact scanning needs the whole source in memory.");
+        }
+
+        compactTokens = new TokenStore(text, lines);
+        while (!isAtEnd() && cursorIndex < limit) {
+            start = cursorIndex;
+            cursorIndex++;
+            scanToken(source.charAt(cursorIndex - 1));
+        }
+
+        return compactTokens;
+    }
+
+    int offset() {
+        return cursorIndex;
+    }
+
+    int line() {
+        return line;
+    }
+
+    // Scans just far enough to produce one more token. Keeps handing
+    // back EOF once the source runs out.
+    public Token nextToken() {
         while ((!isAtEnd())) {
             start = cursorIndex;
+            source.release(start);
 
             //Done in this order to prevent an infinite loop
             //if it's an invalid character.
             cursorIndex++;
             scanToken(source.charAt(cursorIndex - 1));
+
+            if (scannedToken != null) {
+                Token token = scannedToken;
+                scannedToken = null;
+                return token;
+            }
         }
 
-        tokens.add(new Token(EOF, "", null, line));
-        return tokens;
+        return new Token(EOF, "", null, line, cursorIndex, cursorIndex, lines);
     }
 
     private boolean isAtEnd() {
-        return cursorIndex >= source.length();
+        return source.isAtEnd(cursorIndex);
     }
 
     private void scanToken(char character) {
-        if (singleCharacterToken(character) != null) {
-            addToken(singleCharacterToken(character));
-            return;
-        }
-
-        if (isComparisonOperator(character)) {
-            addComparisonOperatorTokenFor(character);
-            return;
-        }
-
-        if (character == '/') {
-            if (!isAComment()) {
-                addToken(SLASH);
-            }
-            return;
-        }
-
-        switch (character) {
-            case ' ': //God, I hate this about Java
-            case '\r':
-            case '\t':
+        switch (characterClass(character)) {
+            case SINGLE_CHARACTER:
+                addToken(singleCharacterTokens[character]);
+                return;
+            case COMPARISON_OPERATOR:
+                addComparisonOperatorTokenFor(character);
+                return;
+            case SLASH_OR_COMMENT:
+                if (!isAComment()) {
+                    addToken(SLASH);
+                }
+                return;
+            case WHITESPACE:
                 // Ignore whitespace.
                 return;
-            case '\n':
-                line++;
+            case NEWLINE:
+                newLine(cursorIndex);
+                return;
+            case QUOTE:
+                addStringToken();
+                return;
+            case DIGIT:
+                addNumberToken();
+                return;
+            case ALPHA:
+                addIdentifierToken();
                 return;
         }
 
-        if (character == '"') {
-            addStringToken();
-            return;
-        }
-
-        if (isDigit(character)) {
-            addNumberToken();
-            return;
-        }
-
-        if (isAlpha(character)) {
-            addIdentifierToken();
-            return;
-        }
-
-        Lox.error(line, "Unexpected character.");
+        errors.error(line, lines.column(line, start), "Unexpected character.");
     }
 
-    private boolean isComparisonOperator(char character) {
-        return comparisonOperators.contains(character);
+    private static byte characterClass(char character) {
+        // Nothing outside ASCII means anything to Lox yet.
+        if (character >= ASCII) return UNEXPECTED;
+        return characterClasses[character];
     }
 
     private void addComparisonOperatorTokenFor(char character) {
@@ -130,16 +214,61 @@ class Scanner {
                 !isNextChar(';') &&
                 !isAtEnd()) cursorIndex++;
 
-        String text = source.substring(start, cursorIndex);
+        TokenType type = keywordOrIdentifier();
+        if (type == IDENTIFIER || compactTokens != null) {
+            addToken(type);
+        } else {
+            // Keywords share one lexeme instead of each getting a substring.
+            addToken(type, null, keywordLexemes[type.ordinal()]);
+        }
+    }
 
-        TokenType type = keywords.get(text);
-        if (type == null) type = IDENTIFIER;
-        addToken(type);
+    // Matches keywords straight off the source characters, branching on
+    // the first letter (and the second, where letters are shared) before
+    // comparing the rest.
+    private TokenType keywordOrIdentifier() {
+        switch (source.charAt(start)) {
+            case 'a': return keyword(AND);
+            case 'c': return keyword(CLASS);
+            case 'e': return keyword(ELSE);
+            case 'f':
+                if (cursorIndex - start > 1) {
+                    switch (source.charAt(start + 1)) {
+                        case 'a': return keyword(FALSE);
+                        case 'o': return keyword(FOR);
+                        case 'u': return keyword(FUN);
+                    }
+                }
+                break;
+            case 'i': return keyword(IF);
+            case 'n': return keyword(NIL);
+            case 'o': return keyword(OR);
+            case 'p': return keyword(PRINT);
+            case 'r': return keyword(RETURN);
+            case 's': return keyword(SUPER);
+            case 't':
+                if (cursorIndex - start > 1) {
+                    switch (source.charAt(start + 1)) {
+                        case 'h': return keyword(THIS);
+                        case 'r': return keyword(TRUE);
+                    }
+                }
+                break;
+            case 'v': return keyword(VAR);
+            case 'w': return keyword(WHILE);
+        }
+
+        return IDENTIFIER;
     }
 
-    private TokenType singleCharacterToken(char character) {
-        TokenType type = singleCharacterTokens.get(character);
-        return type;
+    private TokenType keyword(TokenType candidate) {
+        String lexeme = keywordLexemes[candidate.ordinal()];
+        if (cursorIndex - start != lexeme.length()) return IDENTIFIER;
+
+        for (int i = 0; i < lexeme.length(); i++) {
+            if (source.charAt(start + i) != lexeme.charAt(i)) return IDENTIFIER;
+        }
+        return candidate;
     }
 
     private boolean isAlpha(char c) {
@@ -155,7 +284,7 @@ class Scanner {
     private void addNumberToken() {
         while (isDigit(source.charAt(cursorIndex - 1)) &&
                 !isNextChar(';') &&
-                !isNextChar(reserved) && //Fix later?
+                !isNextCharReserved() && //Fix later?
                 !isAtEnd()) {
             cursorIndex++;
         }
@@ -168,22 +297,41 @@ class Scanner {
             while (isDigit(source.charAt(cursorIndex))) cursorIndex++;
         }
 
-        addToken(NUMBER, Double.parseDouble(source.substring(start, cursorIndex)));
+        double value;
+        try {
+            value = Double.parseDouble(source.substring(start, cursorIndex));
+        } catch (NumberFormatException error) {
+            // The digits took a character that isn't one along with them.
+            errors.error(line, lines.column(line, start), "Invalid number.");
+            return;
+        }
+        if (compactTokens != null) {
+            compactTokens.addNumber(start, cursorIndex, line, value);
+            return;
+        }
+
+        addToken(NUMBER, value);
     }
 
     private void addStringToken() {
+        int startLine = line;
         while (!isNextChar('"') && !isAtEnd()) {
-            if (isNextChar('\n')) line++;
+            if (isNextChar('\n')) newLine(cursorIndex + 1);
             cursorIndex++;
         }
 
         if (isAtEnd()) {
-            Lox.error(line, "Unterminated addStringToken.");
+            errors.error(startLine, lines.column(startLine, start), "Unterminated addStringToken.");
             return;
         }
 
         cursorIndex++;
 
+        if (compactTokens != null) {
+            compactTokens.add(STRING, start, cursorIndex, line);
+            return;
+        }
+
         // Trim the surrounding quotes.
         String value = source.substring(start + 1, cursorIndex - 1);
 
@@ -203,9 +351,10 @@ class Scanner {
         return expected == source.charAt(cursorIndex);
     }
 
-    private boolean isNextChar(Set<Character> expected) {
+    private boolean isNextCharReserved() {
         if (isAtEnd()) return false;
-        return expected.contains(source.charAt(cursorIndex));
+        char next = source.charAt(cursorIndex);
+        return next < ASCII && reserved[next];
     }
 
 
@@ -214,64 +363,105 @@ class Scanner {
     }
 
     private void addToken(TokenType type, Object literal) {
-        String text = source.substring(start, cursorIndex);
-        tokens.add(new Token(type, text, literal, line));
+        if (compactTokens != null) {
+            compactTokens.add(type, start, cursorIndex, line);
+            return;
+        }
+
+        addToken(type, literal, source.substring(start, cursorIndex));
+    }
+
+    private void addToken(TokenType type, Object literal, String text) {
+        scannedToken = new Token(type, text, literal, line, start, cursorIndex, lines);
     }
 
+    private void newLine(int lineStart) {
+        line++;
+        lines.addLine(lineStart);
+    }
+
+    LineIndex lineIndex() {
+        return lines;
+    }
 
-    private static final Map<String, TokenType> keywords;
-    private static final Map<Character, TokenType> singleCharacterTokens;
-    private static final List<Character> comparisonOperators;
-    private static final Set<Character> reserved;
 
+    private static final String[] keywordLexemes = new String[TokenType.values().length];
+
+    // Character classes, indexed by ASCII code, so the scanner's inner loop
+    // never boxes a char or hashes it.
+    private static final int ASCII = 128;
+    private static final byte UNEXPECTED = 0;
+    private static final byte SINGLE_CHARACTER = 1;
+    private static final byte COMPARISON_OPERATOR = 2;
+    private static final byte SLASH_OR_COMMENT = 3;
+    private static final byte WHITESPACE = 4;
+    private static final byte NEWLINE = 5;
+    private static final byte QUOTE = 6;
+    private static final byte DIGIT = 7;
+    private static final byte ALPHA = 8;
+
+    private static final byte[] characterClasses = new byte[ASCII];
+    private static final TokenType[] singleCharacterTokens = new TokenType[ASCII];
+    private static final boolean[] reserved = new boolean[ASCII];
 
     static {
-        comparisonOperators = new ArrayList<Character>();
-        comparisonOperators.add('!');
-        comparisonOperators.add('=');
-        comparisonOperators.add('>');
-        comparisonOperators.add('<');
+        keywordLexemes[AND.ordinal()] = "and";
+        keywordLexemes[CLASS.ordinal()] = "class";
+        keywordLexemes[ELSE.ordinal()] = "else";
+        keywordLexemes[FALSE.ordinal()] = "false";
+        keywordLexemes[FOR.ordinal()] = "for";
+        keywordLexemes[FUN.ordinal()] = "fun";
+        keywordLexemes[IF.ordinal()] = "if";
+        keywordLexemes[NIL.ordinal()] = "nil";
+        keywordLexemes[OR.ordinal()] = "or";
+        keywordLexemes[PRINT.ordinal()] = "print";
+        keywordLexemes[RETURN.ordinal()] = "return";
+        keywordLexemes[SUPER.ordinal()] = "super";
+        keywordLexemes[THIS.ordinal()] = "this";
+        keywordLexemes[TRUE.ordinal()] = "true";
+        keywordLexemes[VAR.ordinal()] = "var";
+        keywordLexemes[WHILE.ordinal()] = "while";
     }
 
     static {
-        keywords = new HashMap<>();
-        keywords.put("and", AND);
-        keywords.put("class", CLASS);
-        keywords.put("else", ELSE);
-        keywords.put("false", FALSE);
-        keywords.put("for", FOR);
-        keywords.put("fun", FUN);
-        keywords.put("if", IF);
-        keywords.put("nil", NIL);
-        keywords.put("or", OR);
-        keywords.put("print", PRINT);
-        keywords.put("return", RETURN);
-        keywords.put("super", SUPER);
-        keywords.put("this", THIS);
-        keywords.put("true", TRUE);
-        keywords.put("var", VAR);
-        keywords.put("while", WHILE);
+        singleCharacterTokens['('] = LEFT_PAREN;
+        singleCharacterTokens[')'] = RIGHT_PAREN;
+        singleCharacterTokens['{'] = LEFT_BRACE;
+        singleCharacterTokens['}'] = RIGHT_BRACE;
+        singleCharacterTokens[','] = COMMA;
+        singleCharacterTokens['.'] = DOT;
+        singleCharacterTokens['-'] = MINUS;
+        singleCharacterTokens['+'] = PLUS;
+        singleCharacterTokens[';'] = SEMICOLON;
+        singleCharacterTokens['*'] = STAR;
+        singleCharacterTokens[':'] = COLON;
+        singleCharacterTokens['?'] = QUESTION_MARK;
     }
 
     static {
-        singleCharacterTokens = new HashMap<>();
-        singleCharacterTokens.put('(', LEFT_PAREN);
-        singleCharacterTokens.put(')', RIGHT_PAREN);
-        singleCharacterTokens.put('{', LEFT_BRACE);
-        singleCharacterTokens.put('}', RIGHT_BRACE);
-        singleCharacterTokens.put(',', COMMA);
-        singleCharacterTokens.put('.', DOT);
-        singleCharacterTokens.put('-', MINUS);
-        singleCharacterTokens.put('+', PLUS);
-        singleCharacterTokens.put(';', SEMICOLON);
-        singleCharacterTokens.put('*', STAR);
-        singleCharacterTokens.put(':', COLON);
-        singleCharacterTokens.put('?', QUESTION_MARK);
+        for (char c = 0; c < ASCII; c++) {
+            if (singleCharacterTokens[c] != null) characterClasses[c] = SINGLE_CHARACTER;
+            else if (c >= '0' && c <= '9') characterClasses[c] = DIGIT;
+            else if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_') characterClasses[c] = ALPHA;
+        }
+
+        characterClasses['!'] = COMPARISON_OPERATOR;
+        characterClasses['='] = COMPARISON_OPERATOR;
+        characterClasses['>'] = COMPARISON_OPERATOR;
+        characterClasses['<'] = COMPARISON_OPERATOR;
+        characterClasses['/'] = SLASH_OR_COMMENT;
+        characterClasses[' '] = WHITESPACE;
+        characterClasses['\r'] = WHITESPACE;
+        characterClasses['\t'] = WHITESPACE;
+        characterClasses['\n'] = NEWLINE;
+        characterClasses['"'] = QUOTE;
     }
 
     static {
-        reserved = new HashSet<Character>(singleCharacterTokens.keySet());
-        reserved.addAll(comparisonOperators);
-        reserved.remove(",");
+        // Characters that end a number without needing whitespace first.
+        for (char c = 0; c < ASCII; c++) {
+            reserved[c] = characterClasses[c] == SINGLE_CHARACTER ||
+                    characterClasses[c] == COMPARISON_OPERATOR;
+        }
     }
 }
@@ -0,0 +1,108 @@
+package com.chelseasinterpreter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+// Gives the scanner random access to the characters of a script by absolute
+// offset. Backed either by a CharSequence that is already in memory (a String,
+// or a CharBuffer over a memory-mapped file) or by a Reader that is pulled in
+// fixed-size windows. In the Reader case, everything before the last released
+// offset gets dropped the next time the window needs room, so memory stays
+// proportional to the longest token rather than to the whole file.
+class SourceWindow {
+    static final int DEFAULT_WINDOW_SIZE = 8192;
+
+    private final CharSequence text;
+    private final Reader reader;
+
+    private char[] window;
+    private int windowOffset = 0;
+    private int windowLength = 0;
+    private int releasedOffset = 0;
+    private boolean readerExhausted = false;
+
+    SourceWindow(CharSequence text) {
+        this.text = text;
+        this.reader = null;
+    }
+
+    SourceWindow(Reader reader) {
+        this(reader, DEFAULT_WINDOW_SIZE);
+    }
+
+    SourceWindow(Reader reader, int windowSize) {
+        this.text = null;
+        this.reader = reader;
+        this.window = new char[windowSize];
+    }
+
+    boolean isAtEnd(int offset) {
+        if (text != null) return offset >= text.length();
+        return !fillTo(offset);
+    }
+
+    // Past the end of the source there is nothing to look at, so lookahead
+    // sees '\0' instead of running off the end.
+    char charAt(int offset) {
+        if (isAtEnd(offset)) return '\0';
+        if (text != null) return text.charAt(offset);
+        return window[offset - windowOffset];
+    }
+
+    String substring(int from, int to) {
+        if (text != null) {
+            return text.subSequence(from, Math.min(to, text.length())).toString();
+        }
+
+        fillTo(to - 1);
+        int end = Math.min(to, windowOffset + windowLength);
+        return new String(window, from - windowOffset, end - from);
+    }
+
+    // The whole source, when it is in memory rather than behind a Reader.
+    CharSequence text() {
+        return text;
+    }
+
+    // The scanner promises never to look behind this offset again.
+    void release(int offset) {
+        releasedOffset = offset;
+    }
+
+    private boolean fillTo(int offset) {
+        while (offset >= windowOffset + windowLength) {
+            if (readerExhausted) return false;
+            if (windowLength == window.length) makeRoom();
+
+            int read;
+            try {
+                read = reader.read(window, windowLength, window.length - windowLength);
+            } catch (IOException error) {
+                throw new UncheckedIOException(error);
+            }
+
+            if (read < 0) {
+                readerExhausted = true;
+                return false;
+            }
+            windowLength += read;
+        }
+        return true;
+    }
+
+    private void makeRoom() {
+        int discard = releasedOffset - windowOffset;
+        if (discard > 0) {
+            System.arraycopy(window, discard, window, 0, windowLength - discard);
+            windowLength -= discard;
+            windowOffset = releasedOffset;
+        }
+
+        // A single token (a long string or comment) can outgrow the window.
+        if (windowLength == window.length) {
+            window = Arrays.copyOf(window, window.length * 2);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.chelseasinterpreter;
+
+// Runs expressions as self-specializing Node trees. Worth it when the
+// same tree gets executed over and over: prepare() it once, then every
+// execute() after the first runs the specialized nodes.
+class SpecializingInterpreter implements Expr.Visitor<Node> {
+    private final OutputSink output;
+    private final ErrorReporter errors;
+
+    SpecializingInterpreter() {
+        this(OutputSink.standardOutput(), ErrorReporter.standardError());
+    }
+
+    SpecializingInterpreter(OutputSink output, ErrorReporter errors) {
+        this.output = output;
+        this.errors = errors;
+    }
+
+    Node.Root prepare(Expr expr) {
+        return new Node.Root(expr.accept(this));
+    }
+
+    void interpret(Node.Root tree) {
+        try {
+            Object value = tree.execute();
+            output.write(value);
+        } catch (RuntimeError error) {
+            output.flush();
+            errors.runtimeError(error);
+        }
+    }
+
+    @Override
+    public Node visitBinaryExpr(Expr.Binary expr) {
+        return new Node.UninitializedBinary(expr.operator,
+                expr.left.accept(this), expr.right.accept(this));
+    }
+
+    @Override
+    public Node visitGroupingExpr(Expr.Grouping expr) {
+        return expr.expression.accept(this);
+    }
+
+    @Override
+    public Node visitLiteralExpr(Expr.Literal expr) {
+        if (expr.value instanceof Double) return new Node.NumberLiteral((double) expr.value);
+        return new Node.Literal(expr.value);
+    }
+
+    @Override
+    public Node visitUnaryExpr(Expr.Unary expr) {
+        if (expr.operator.type == TokenType.MINUS) {
+            return new Node.Negate(expr.operator, expr.right.accept(this));
+        }
+        return new Node.Not(expr.right.accept(this));
+    }
+
+    @Override
+    public Node visitConditionalExpr(Expr.Conditional expr) {
+        return new Node.Conditional(expr.condition.accept(this),
+                expr.thenBranch.accept(this), expr.elseBranch.accept(this));
+    }
+
+    @Override
+    public Node visitErrorExpr(Expr.Error expr) {
+        return new Node.Error(expr.token, expr.message);
+    }
+}
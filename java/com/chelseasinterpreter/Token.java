@@ -8,11 +8,49 @@ class Token {
     final Object literal;
     final int line;
 
+    // Offsets into the source, or -1 for tokens made up outside a scan.
+    final int start;
+    final int end;
+    private final LineIndex lines;
+
     Token(TokenType type, String lexeme, Object literal, int line) {
+        this(type, lexeme, literal, line, -1, -1, null);
+    }
+
+    Token(TokenType type, String lexeme, Object literal, int line,
+          int start, int end, LineIndex lines) {
         this.type = type;
         this.lexeme = lexeme;
         this.literal = literal;
         this.line = line;
+        this.start = start;
+        this.end = end;
+        this.lines = lines;
+    }
+
+    // 0 when the token didn't come from a scanner.
+    int column() {
+        if (lines == null || start < 0) return 0;
+        return lines.column(startLine(), start);
+    }
+
+    // line is where the token ends, which for a string that spans lines
+    // isn't where it starts.
+    int startLine() {
+        return startLine(type, lexeme, line);
+    }
+
+    static int startLine(TokenType type, String lexeme, int line) {
+        if (type != TokenType.STRING) return line;
+
+        for (int i = 0; i < lexeme.length(); i++) {
+            if (lexeme.charAt(i) == '\n') line--;
+        }
+        return line;
+    }
+
+    LineIndex lineIndex() {
+        return lines;
     }
 
     public String toString() {
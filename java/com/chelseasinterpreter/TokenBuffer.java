@@ -0,0 +1,60 @@
+package com.chelseasinterpreter;
+
+import java.util.Arrays;
+
+// The parser's view of a token source: a small ring of the tokens pulled so
+// far, enough to look back at the previous token and a couple of tokens
+// ahead. Tokens are only pulled from the source when the parser looks at
+// them, so scanning and parsing happen in the same pass.
+class TokenBuffer {
+    private static final int CAPACITY = 4;
+    private static final int MASK = CAPACITY - 1;
+
+    private final TokenSource source;
+    private final Token[] ring = new Token[CAPACITY];
+
+    // Both are absolute positions in the token stream.
+    private int cursorIndex = 0;
+    private int pulled = 0;
+
+    TokenBuffer(TokenSource source) {
+        this.source = source;
+    }
+
+    // peek(0) is the next token, peek(-1) the one just consumed.
+    Token peek(int distance) {
+        int index = cursorIndex + distance;
+        if (index < 0 || index < pulled - CAPACITY || distance >= CAPACITY - 1) {
+            throw new IndexOutOfBoundsException("Token " + distance + " is outside the lookahead window.");
+        }
+
+        while (index >= pulled) pull();
+        return ring[index & MASK];
+    }
+
+    void advance() {
+        cursorIndex++;
+    }
+
+    void reset() {
+        Arrays.fill(ring, null);
+        cursorIndex = 0;
+        pulled = 0;
+    }
+
+    void skipToEnd() {
+        while (peek(0).type != TokenType.EOF) advance();
+    }
+
+    private void pull() {
+        Token last = pulled > 0 ? ring[(pulled - 1) & MASK] : null;
+
+        // Once the source has run out, keep repeating its EOF.
+        if (last != null && last.type == TokenType.EOF) {
+            ring[pulled & MASK] = last;
+        } else {
+            ring[pulled & MASK] = source.nextToken();
+        }
+        pulled++;
+    }
+}
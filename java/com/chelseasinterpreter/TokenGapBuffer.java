@@ -0,0 +1,140 @@
+package com.chelseasinterpreter;
+
+import java.util.Arrays;
+import java.util.List;
+
+// The tokens of an edited source, with where each one starts now and
+// the line it is on, kept either side of a gap the way GapBuffer keeps
+// characters. Tokens after the gap share one pending move, so moving
+// everything after an edit costs no more than moving the gap there.
+class TokenGapBuffer {
+    private Token[] tokens = new Token[64];
+    private int[] starts = new int[64];
+    private int[] lines = new int[64];
+    private int gapStart = 0;
+    private int gapEnd = tokens.length;
+
+    // Still to be added to the starts and lines after the gap.
+    private int delta = 0;
+    private int lineDelta = 0;
+
+    int size() {
+        return tokens.length - (gapEnd - gapStart);
+    }
+
+    Token token(int index) {
+        return tokens[physical(index)];
+    }
+
+    int start(int index) {
+        int at = physical(index);
+        return at < gapStart ? starts[at] : starts[at] + delta;
+    }
+
+    // For a string, the line it ends on.
+    int line(int index) {
+        int at = physical(index);
+        return at < gapStart ? lines[at] : lines[at] + lineDelta;
+    }
+
+    int end(int index) {
+        Token token = token(index);
+        return start(index) + (token.end - token.start);
+    }
+
+    void clear() {
+        Arrays.fill(tokens, null);
+        gapStart = 0;
+        gapEnd = tokens.length;
+        delta = 0;
+        lineDelta = 0;
+    }
+
+    void add(Token token) {
+        moveGap(size());
+        makeRoom(1);
+        put(token, token);
+    }
+
+    // Puts replacement, where it was scanned, in place of the tokens from
+    // up to to, and moves the tokens after them along.
+    void replace(int from, int to, List<Token> replacement, int delta, int lineDelta) {
+        moveGap(to);
+        Arrays.fill(tokens, from, to, null);
+        gapStart = from;
+
+        makeRoom(replacement.size());
+        for (Token token : replacement) put(token, token);
+        this.delta += delta;
+        this.lineDelta += lineDelta;
+    }
+
+    // The tokens from on were scanned again and came out the same, but
+    // where rescanned says, and the tokens after them move along.
+    void reposition(int from, List<Token> rescanned, int delta, int lineDelta) {
+        moveGap(from + rescanned.size());
+        gapStart = from;
+        for (Token token : rescanned) put(tokens[gapStart], token);
+        this.delta += delta;
+        this.lineDelta += lineDelta;
+    }
+
+    private void put(Token token, Token position) {
+        tokens[gapStart] = token;
+        starts[gapStart] = position.start;
+        lines[gapStart] = position.line;
+        gapStart++;
+    }
+
+    private int physical(int index) {
+        return index < gapStart ? index : index + gapEnd - gapStart;
+    }
+
+    // Tokens crossing the gap take on or give back the pending move. The
+    // gap can be empty, so a token may be moved onto itself.
+    private void moveGap(int index) {
+        while (index < gapStart) {
+            gapStart--;
+            gapEnd--;
+            Token token = tokens[gapStart];
+            tokens[gapStart] = null;
+            tokens[gapEnd] = token;
+            starts[gapEnd] = starts[gapStart] - delta;
+            lines[gapEnd] = lines[gapStart] - lineDelta;
+        }
+
+        while (index > gapStart) {
+            Token token = tokens[gapEnd];
+            tokens[gapEnd] = null;
+            tokens[gapStart] = token;
+            starts[gapStart] = starts[gapEnd] + delta;
+            lines[gapStart] = lines[gapEnd] + lineDelta;
+            gapStart++;
+            gapEnd++;
+        }
+    }
+
+    private void makeRoom(int needed) {
+        if (gapEnd - gapStart >= needed) return;
+
+        int after = tokens.length - gapEnd;
+        int capacity = Math.max(tokens.length * 2, tokens.length + needed);
+        tokens = grown(tokens, capacity, after);
+        starts = grown(starts, capacity, after);
+        lines = grown(lines, capacity, after);
+        gapEnd = capacity - after;
+    }
+
+    private Token[] grown(Token[] array, int capacity, int after) {
+        Token[] grown = Arrays.copyOf(array, capacity);
+        System.arraycopy(array, gapEnd, grown, capacity - after, after);
+        Arrays.fill(grown, gapEnd, capacity - after, null);
+        return grown;
+    }
+
+    private int[] grown(int[] array, int capacity, int after) {
+        int[] grown = Arrays.copyOf(array, capacity);
+        System.arraycopy(array, gapEnd, grown, capacity - after, after);
+        return grown;
+    }
+}
@@ -0,0 +1,7 @@
+package com.chelseasinterpreter;
+
+// Anything the parser can pull tokens from one at a time. Sources end
+// with an EOF token.
+interface TokenSource {
+    Token nextToken();
+}
@@ -0,0 +1,140 @@
+package com.chelseasinterpreter;
+
+import java.util.Arrays;
+
+// Every token of a scanned source, kept as parallel primitive arrays
+// rather than one Token object (with its own lexeme String and boxed
+// literal) per token. A token is just its index here. Lexemes and string
+// literals are cut from the source only when something asks for them,
+// and number literals sit in a side pool of doubles. token(i) builds a
+// real Token for the places that need one, like error messages or the parser.
+class TokenStore {
+    private static final TokenType[] tokenTypes = TokenType.values();
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final CharSequence source;
+    private final LineIndex lineIndex;
+
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private int[] starts = new int[INITIAL_CAPACITY];
+    private int[] ends = new int[INITIAL_CAPACITY];
+    private int[] lines = new int[INITIAL_CAPACITY];
+    private int size = 0;
+
+    // Numbers are rare enough next to everything else that they get their
+    // own pool, along with the (ascending) index of the token each one
+    // belongs to.
+    private double[] numbers = new double[INITIAL_CAPACITY];
+    private int[] numberTokens = new int[INITIAL_CAPACITY];
+    private int numberCount = 0;
+
+    TokenStore(CharSequence source, LineIndex lineIndex) {
+        this.source = source;
+        this.lineIndex = lineIndex;
+    }
+
+    void add(TokenType type, int start, int end, int line) {
+        if (size == types.length) grow();
+
+        types[size] = (byte) type.ordinal();
+        starts[size] = start;
+        ends[size] = end;
+        lines[size] = line;
+        size++;
+    }
+
+    void addNumber(int start, int end, int line, double value) {
+        if (numberCount == numbers.length) {
+            numbers = Arrays.copyOf(numbers, numberCount * 2);
+            numberTokens = Arrays.copyOf(numberTokens, numberCount * 2);
+        }
+
+        numbers[numberCount] = value;
+        numberTokens[numberCount] = size;
+        numberCount++;
+        add(TokenType.NUMBER, start, end, line);
+    }
+
+    int size() {
+        return size;
+    }
+
+    TokenType type(int index) {
+        return tokenTypes[types[checkIndex(index)]];
+    }
+
+    int start(int index) {
+        return starts[checkIndex(index)];
+    }
+
+    int end(int index) {
+        return ends[checkIndex(index)];
+    }
+
+    int line(int index) {
+        return lines[checkIndex(index)];
+    }
+
+    int column(int index) {
+        int line = Token.startLine(type(index), lexeme(index), line(index));
+        return lineIndex.column(line, start(index));
+    }
+
+    double number(int index) {
+        int slot = Arrays.binarySearch(numberTokens, 0, numberCount, checkIndex(index));
+        if (slot < 0) {
+            throw new IllegalArgumentException("Token " + index + " is not a number.");
+        }
+        return numbers[slot];
+    }
+
+    String lexeme(int index) {
+        return source.subSequence(start(index), Math.min(end(index), source.length())).toString();
+    }
+
+    Object literal(int index) {
+        switch (type(index)) {
+            case NUMBER:
+                return number(index);
+            case STRING:
+                // Trim the surrounding quotes.
+                return source.subSequence(start(index) + 1, end(index) - 1).toString();
+            default:
+                return null;
+        }
+    }
+
+    Token token(int index) {
+        return new Token(type(index), lexeme(index), literal(index), line(index),
+                start(index), end(index), lineIndex);
+    }
+
+    // Feeds the stored tokens to a Parser, building each Token as it is pulled.
+    TokenSource tokenSource() {
+        return new TokenSource() {
+            private int cursorIndex = 0;
+
+            @Override
+            public Token nextToken() {
+                Token token = token(cursorIndex);
+                if (cursorIndex < size - 1) cursorIndex++;
+                return token;
+            }
+        };
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Token " + index + " of " + size);
+        }
+        return index;
+    }
+
+    private void grow() {
+        int capacity = types.length * 2;
+        types = Arrays.copyOf(types, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        ends = Arrays.copyOf(ends, capacity);
+        lines = Arrays.copyOf(lines, capacity);
+    }
+}
@@ -0,0 +1,190 @@
+package com.chelseasinterpreter;
+
+import java.util.Arrays;
+
+import static com.chelseasinterpreter.Chunk.*;
+
+// Runs a Chunk on an operand stack. Numbers stay unboxed on a parallel
+// double[] stack: their slot in the value stack just holds the NUMBER
+// marker. A Double only gets allocated if the final result is a number.
+class VirtualMachine {
+    private static final Object NUMBER = new Object();
+
+    private Object[] values = new Object[16];
+    private double[] numbers = new double[16];
+
+    private final OutputSink output;
+    private final ErrorReporter errors;
+
+    VirtualMachine() {
+        this(OutputSink.standardOutput(), ErrorReporter.standardError());
+    }
+
+    VirtualMachine(OutputSink output, ErrorReporter errors) {
+        this.output = output;
+        this.errors = errors;
+    }
+
+    void interpret(Chunk chunk) {
+        try {
+            Object value = run(chunk);
+            output.write(value);
+        } catch (RuntimeError error) {
+            output.flush();
+            errors.runtimeError(error);
+        }
+    }
+
+    Object run(Chunk chunk) {
+        if (values.length < chunk.maxStackDepth) {
+            values = new Object[chunk.maxStackDepth];
+            numbers = new double[chunk.maxStackDepth];
+        }
+
+        Object[] values = this.values;
+        double[] numbers = this.numbers;
+        int[] code = chunk.code;
+        int top = 0;
+        int ip = 0;
+
+        for (;;) {
+            int instruction = code[ip++];
+            switch (instruction) {
+                case OP_NUMBER:
+                    values[top] = NUMBER;
+                    numbers[top] = chunk.numbers[code[ip++]];
+                    top++;
+                    break;
+                case OP_CONSTANT:
+                    values[top++] = chunk.constants.get(code[ip++]);
+                    break;
+                case OP_NIL:
+                    values[top++] = null;
+                    break;
+                case OP_TRUE:
+                    values[top++] = Boolean.TRUE;
+                    break;
+                case OP_FALSE:
+                    values[top++] = Boolean.FALSE;
+                    break;
+
+                case OP_ADD:
+                    top--;
+                    if (values[top - 1] == NUMBER && values[top] == NUMBER) {
+                        numbers[top - 1] += numbers[top];
+                    } else if (values[top - 1] instanceof String && values[top] instanceof String) {
+                        values[top - 1] = (String) values[top - 1] + (String) values[top];
+                    } else {
+                        throw new RuntimeError(chunk.tokens[ip - 1],
+                                "Operands must be two numbers or two strings.");
+                    }
+                    break;
+                case OP_SUBTRACT:
+                    top--;
+                    checkNumberOperands(chunk, ip, values, top);
+                    numbers[top - 1] -= numbers[top];
+                    break;
+                case OP_MULTIPLY:
+                    top--;
+                    checkNumberOperands(chunk, ip, values, top);
+                    numbers[top - 1] *= numbers[top];
+                    break;
+                case OP_DIVIDE:
+                    top--;
+                    checkNumberOperands(chunk, ip, values, top);
+                    numbers[top - 1] /= numbers[top];
+                    break;
+
+                case OP_GREATER:
+                    top--;
+                    checkNumberOperands(chunk, ip, values, top);
+                    values[top - 1] = numbers[top - 1] > numbers[top];
+                    break;
+                case OP_GREATER_EQUAL:
+                    top--;
+                    checkNumberOperands(chunk, ip, values, top);
+                    values[top - 1] = numbers[top - 1] >= numbers[top];
+                    break;
+                case OP_LESS:
+                    top--;
+                    checkNumberOperands(chunk, ip, values, top);
+                    values[top - 1] = numbers[top - 1] < numbers[top];
+                    break;
+                case OP_LESS_EQUAL:
+                    top--;
+                    checkNumberOperands(chunk, ip, values, top);
+                    values[top - 1] = numbers[top - 1] <= numbers[top];
+                    break;
+                case OP_EQUAL:
+                    top--;
+                    values[top - 1] = isEqual(values, numbers, top - 1, top);
+                    break;
+                case OP_NOT_EQUAL:
+                    top--;
+                    values[top - 1] = !isEqual(values, numbers, top - 1, top);
+                    break;
+                case OP_COMMA:
+                    top--;
+                    values[top - 1] = null;
+                    break;
+
+                case OP_NEGATE:
+                    if (values[top - 1] != NUMBER) {
+                        throw new RuntimeError(chunk.tokens[ip - 1], "Operand must be a number.");
+                    }
+                    numbers[top - 1] = -numbers[top - 1];
+                    break;
+                case OP_NOT:
+                    values[top - 1] = !isTruthy(values[top - 1]);
+                    break;
+
+                case OP_JUMP:
+                    ip = code[ip];
+                    break;
+                case OP_JUMP_IF_FALSE:
+                    top--;
+                    if (isTruthy(values[top])) {
+                        ip++;
+                    } else {
+                        ip = code[ip];
+                    }
+                    break;
+
+                case OP_ERROR:
+                    throw new RuntimeError(chunk.tokens[ip - 1], (String) chunk.constants.get(code[ip]));
+
+                case OP_RETURN:
+                    top--;
+                    Object result = values[top] == NUMBER ? (Object) numbers[top] : values[top];
+                    // Don't hold on to the last run's strings.
+                    Arrays.fill(values, 0, chunk.maxStackDepth, null);
+                    return result;
+            }
+        }
+    }
+
+    private void checkNumberOperands(Chunk chunk, int ip, Object[] values, int top) {
+        if (values[top - 1] == NUMBER && values[top] == NUMBER) return;
+
+        throw new RuntimeError(chunk.tokens[ip - 1], "Operands must be numbers.");
+    }
+
+    private boolean isTruthy(Object value) {
+        if (value == null) return false;
+        if (value instanceof Boolean) return (boolean) value;
+        return true;
+    }
+
+    // Same answers as Interpreter.isEqual, which compares numbers with
+    // Double.equals: NaN equals itself and 0.0 doesn't equal -0.0.
+    private boolean isEqual(Object[] values, double[] numbers, int a, int b) {
+        if (values[a] == NUMBER || values[b] == NUMBER) {
+            return values[a] == values[b] &&
+                    Double.doubleToLongBits(numbers[a]) == Double.doubleToLongBits(numbers[b]);
+        }
+
+        if (values[a] == null && values[b] == null) return true;
+        if (values[a] == null) return false;
+        return values[a].equals(values[b]);
+    }
+}
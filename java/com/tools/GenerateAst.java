@@ -2,6 +2,7 @@ package com.tools;
 
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -18,97 +19,323 @@ public class GenerateAst {
                 "Grouping    : Expr expression",
                 "Literal     : Object value",
                 "Unary       : Token operator, Expr right",
-                "Conditional : Expr condition, Expr thenBranch, Expr elseBranch"
+                "Conditional : Expr condition, Expr thenBranch, Expr elseBranch",
+                "Error       : Token token, String message"
         ));
     }
 
+    // The base class can only be extended by the node classes nested in
+    // it, and they're final, so a switch over kind that covers each of
+    // them covers every node there can be. (A sealed class would say so
+    // outright, but the build targets Java 11.)
     private static void defineAst(String outputDir, String baseName, List<String> types) throws IOException {
         String path = outputDir + "/" + baseName + ".java";
         PrintWriter writer = new PrintWriter(path, "UTF-8");
 
         writer.println("package com.chelseasinterpreter;");
         writer.println();
+        writer.println("import java.util.ArrayList;");
         writer.println("import java.util.List;");
+        writer.println("import java.util.Objects;");
         writer.println();
+        writer.println("// Generated by com.tools.GenerateAst.");
         writer.println("abstract class " + baseName + " {");
 
-        defineVisitor(writer, baseName, types);
+        for (int kind = 0; kind < types.size(); kind++) {
+            writer.println("    static final int " + kindName(types.get(kind)) + " = " + kind + ";");
+        }
+        writer.println();
+
+        defineVisitor(writer, baseName, types, "Visitor<R>", "R");
+        writer.println();
+        writer.println("    // For visits that come up with a primitive, so it isn't boxed.");
+        defineVisitor(writer, baseName, types, "DoubleVisitor", "double");
+        writer.println();
+        defineVisitor(writer, baseName, types, "BooleanVisitor", "boolean");
+        writer.println();
+
+        writer.println("    // Which of the classes below a node is, to switch on.");
+        writer.println("    final int kind;");
+        writer.println("    private int hash = 0;");
+        writer.println();
+        writer.println("    // Only the classes below can extend " + baseName + ".");
+        writer.println("    private " + baseName + "(int kind) {");
+        writer.println("        this.kind = kind;");
+        writer.println("    }");
+
+        // Switch-based visits, one per kind of visitor.
+        defineDispatch(writer, baseName, types, "<R> R", "Visitor<R>");
+        defineDispatch(writer, baseName, types, "double", "DoubleVisitor");
+        defineDispatch(writer, baseName, types, "boolean", "BooleanVisitor");
 
         for (String type : types) {
             String className = type.split(":")[0].trim();
             String fields = type.split(":")[1].trim();
 
-            defineType(writer, baseName, className, fields);
+            writer.println();
+            defineType(writer, baseName, className, kindName(type), fields);
         }
 
-        // The base accept() method.
         writer.println();
-        writer.println("  abstract <R> R accept(Visitor<R> visitor);");
+        writer.println("    abstract <R> R accept(Visitor<R> visitor);");
+        writer.println();
+        writer.println("    // The " + baseName + " fields, in order.");
+        writer.println("    abstract int childCount();");
+        writer.println();
+        writer.println("    abstract " + baseName + " child(int index);");
+        writer.println();
+        writer.println("    // The other fields, for a node of the same kind.");
+        writer.println("    abstract boolean sameFields(" + baseName + " other);");
+        writer.println();
+        writer.println("    abstract int fieldsHash();");
+        writer.println();
+        writer.println("    // Appends the node's first line and leaves its fields on pending, last first.");
+        writer.println("    abstract void describe(StringBuilder builder, List<Object> pending);");
+
+        defineEquality(writer, baseName);
+        defineStringRepresentation(writer, baseName);
 
         writer.println("}");
         writer.close();
     }
 
-    private static void defineStringRepresentation(PrintWriter writer, String baseName, String className, String fieldList) {
-        writer.println("@Override");
-        writer.println("public String toString() {");
+    private static String kindName(String type) {
+        return type.split(":")[0].trim().toUpperCase();
+    }
 
-        writer.println("    StringBuilder builder = new StringBuilder(\"" + baseName + "." + className + "\\n\");");
+    // Structural, with tokens matched on type and lexeme rather than on
+    // where they were scanned. Both walk the trees on a list of their own
+    // instead of recursing, so they cope with trees of any depth. A node
+    // never changes, so its hash is worked out once and kept.
+    private static void defineEquality(PrintWriter writer, String baseName) {
+        writer.println();
+        writer.println("    // Same kinds of node with the same fields all the way down. Tokens");
+        writer.println("    // match on type and lexeme, wherever they were scanned.");
+        writer.println("    @Override");
+        writer.println("    public final boolean equals(Object object) {");
+        writer.println("        if (!(object instanceof " + baseName + ")) return false;");
+        writer.println();
+        writer.println("        // Pairs of nodes still to compare.");
+        writer.println("        List<" + baseName + "> pending = new ArrayList<>();");
+        writer.println("        pending.add(this);");
+        writer.println("        pending.add((" + baseName + ") object);");
+        writer.println("        while (!pending.isEmpty()) {");
+        writer.println("            " + baseName + " right = pending.remove(pending.size() - 1);");
+        writer.println("            " + baseName + " left = pending.remove(pending.size() - 1);");
+        writer.println("            if (left == right) continue;");
+        writer.println("            if (left == null || right == null || left.kind != right.kind) return false;");
+        writer.println("            if (left.hash != 0 && right.hash != 0 && left.hash != right.hash) return false;");
+        writer.println("            if (!left.sameFields(right)) return false;");
+        writer.println();
+        writer.println("            for (int i = 0; i < left.childCount(); i++) {");
+        writer.println("                pending.add(left.child(i));");
+        writer.println("                pending.add(right.child(i));");
+        writer.println("            }");
+        writer.println("        }");
+        writer.println("        return true;");
+        writer.println("    }");
+        writer.println();
+        writer.println("    @Override");
+        writer.println("    public final int hashCode() {");
+        writer.println("        if (hash != 0) return hash;");
+        writer.println();
+        writer.println("        // A node comes off once its children all have their hashes.");
+        writer.println("        List<" + baseName + "> pending = new ArrayList<>();");
+        writer.println("        pending.add(this);");
+        writer.println("        while (!pending.isEmpty()) {");
+        writer.println("            " + baseName + " next = pending.get(pending.size() - 1);");
+        writer.println("            int waiting = pending.size();");
+        writer.println("            for (int i = 0; i < next.childCount(); i++) {");
+        writer.println("                " + baseName + " child = next.child(i);");
+        writer.println("                if (child != null && child.hash == 0) pending.add(child);");
+        writer.println("            }");
+        writer.println("            if (pending.size() > waiting) continue;");
+        writer.println();
+        writer.println("            pending.remove(pending.size() - 1);");
+        writer.println("            int hash = 31 * next.kind + next.fieldsHash();");
+        writer.println("            for (int i = 0; i < next.childCount(); i++) {");
+        writer.println("                " + baseName + " child = next.child(i);");
+        writer.println("                hash = 31 * hash + (child == null ? 0 : child.hash);");
+        writer.println("            }");
+        writer.println("            // 0 means not worked out yet.");
+        writer.println("            next.hash = hash == 0 ? 1 : hash;");
+        writer.println("        }");
+        writer.println("        return hash;");
+        writer.println("    }");
+        writer.println();
+        writer.println("    static boolean sameToken(Token left, Token right) {");
+        writer.println("        if (left == null || right == null) return left == right;");
+        writer.println("        return left.type == right.type && Objects.equals(left.lexeme, right.lexeme);");
+        writer.println("    }");
+        writer.println();
+        writer.println("    static int tokenHash(Token token) {");
+        writer.println("        if (token == null) return 0;");
+        writer.println("        return 31 * token.type.ordinal() + Objects.hashCode(token.lexeme);");
+        writer.println("    }");
+    }
 
-        String[] fields = fieldList.split(", ");
-        for (String field : fields) {
-            String name = field.split(" ")[1];
-            writer.println("    builder.append(\"" + name + ": \" + this." + name + " + \"\\n\");");
-        }
-        writer.println("return builder.toString();");
-        writer.println("}");
+    // The same text as each node's fields nested into its own with string
+    // concatenation, but built on a list of its own instead of recursing.
+    private static void defineStringRepresentation(PrintWriter writer, String baseName) {
+        writer.println();
+        writer.println("    @Override");
+        writer.println("    public final String toString() {");
+        writer.println("        StringBuilder builder = new StringBuilder();");
+        writer.println();
+        writer.println("        // Nodes still to describe and text to append, last first.");
+        writer.println("        List<Object> pending = new ArrayList<>();");
+        writer.println("        pending.add(this);");
+        writer.println("        while (!pending.isEmpty()) {");
+        writer.println("            Object next = pending.remove(pending.size() - 1);");
+        writer.println("            if (next instanceof " + baseName + ") {");
+        writer.println("                ((" + baseName + ") next).describe(builder, pending);");
+        writer.println("            } else {");
+        writer.println("                builder.append(next);");
+        writer.println("            }");
+        writer.println("        }");
+        writer.println("        return builder.toString();");
+        writer.println("    }");
     }
 
-    private static void defineType(PrintWriter writer, String baseName, String className, String fieldList) {
-        writer.println("static class " + className + " extends " + baseName + " {");
+    private static void defineType(PrintWriter writer, String baseName, String className, String kind,
+                                   String fieldList) {
+        writer.println("    static final class " + className + " extends " + baseName + " {");
 
         // Constructor.
         String[] fields = fieldList.split(", ");
-        writer.println("    " + className + "(" + fieldList + ") {");
+        writer.println("        " + className + "(" + fieldList + ") {");
+        writer.println("            super(" + kind + ");");
 
         // Store parameters in fields.
         for (String field : fields) {
             String name = field.split(" ")[1];
-            writer.println("      this." + name + " = " + name + ";");
+            writer.println("            this." + name + " = " + name + ";");
         }
 
-        writer.println("    }");
+        writer.println("        }");
 
         // Fields.
         writer.println();
         for (String field : fields) {
-            writer.println("    final " + field + ";");
+            writer.println("        final " + field + ";");
         }
 
         // Visitor pattern.
         writer.println();
-        writer.println("    <R> R accept(Visitor<R> visitor) {");
-        writer.println("      return visitor.visit" +
-                className + baseName + "(this);");
-        writer.println("    }");
+        writer.println("        <R> R accept(Visitor<R> visitor) {");
+        writer.println("            return visitor.visit" + className + baseName + "(this);");
+        writer.println("        }");
+
+        List<String> children = new ArrayList<>();
+        List<String> others = new ArrayList<>();
+        for (String field : fields) {
+            (field.split(" ")[0].equals(baseName) ? children : others).add(field);
+        }
 
-        defineStringRepresentation(writer, baseName, className, fieldList);
+        writer.println();
+        writer.println("        @Override");
+        writer.println("        int childCount() {");
+        writer.println("            return " + children.size() + ";");
+        writer.println("        }");
 
-        writer.println("}");
+        writer.println();
+        writer.println("        @Override");
+        writer.println("        " + baseName + " child(int index) {");
+        if (children.isEmpty()) {
+            writer.println("            throw new IndexOutOfBoundsException(index);");
+        } else {
+            writer.println("            switch (index) {");
+            for (int i = 0; i < children.size(); i++) {
+                writer.println("                case " + i + ": return " + children.get(i).split(" ")[1] + ";");
+            }
+            writer.println("                default: throw new IndexOutOfBoundsException(index);");
+            writer.println("            }");
+        }
+        writer.println("        }");
+
+        writer.println();
+        writer.println("        @Override");
+        writer.println("        boolean sameFields(" + baseName + " other) {");
+        if (others.isEmpty()) {
+            writer.println("            return true;");
+        } else {
+            writer.println("            " + className + " that = (" + className + ") other;");
+            List<String> comparisons = new ArrayList<>();
+            for (String field : others) {
+                String type = field.split(" ")[0];
+                String name = field.split(" ")[1];
+                comparisons.add(type.equals("Token")
+                        ? "sameToken(" + name + ", that." + name + ")"
+                        : "Objects.equals(" + name + ", that." + name + ")");
+            }
+            writer.println("            return " + String.join(" &&\n                    ", comparisons) + ";");
+        }
+        writer.println("        }");
+
+        writer.println();
+        writer.println("        @Override");
+        writer.println("        int fieldsHash() {");
+        if (others.isEmpty()) {
+            writer.println("            return 0;");
+        } else {
+            List<String> hashes = new ArrayList<>();
+            for (String field : others) {
+                String type = field.split(" ")[0];
+                String name = field.split(" ")[1];
+                hashes.add(type.equals("Token") ? "tokenHash(" + name + ")" : "Objects.hashCode(" + name + ")");
+            }
+            String hash = hashes.get(0);
+            for (int i = 1; i < hashes.size(); i++) hash = "31 * " + hash + " + " + hashes.get(i);
+            writer.println("            return " + hash + ";");
+        }
+        writer.println("        }");
 
+        writer.println();
+        writer.println("        @Override");
+        writer.println("        void describe(StringBuilder builder, List<Object> pending) {");
+        writer.println("            builder.append(\"" + baseName + "." + className + "\\n\");");
+        for (int i = fields.length - 1; i >= 0; i--) {
+            String type = fields[i].split(" ")[0];
+            String name = fields[i].split(" ")[1];
+            writer.println("            pending.add(\"\\n\");");
+            writer.println(type.equals(baseName)
+                    ? "            pending.add(" + name + " == null ? \"null\" : " + name + ");"
+                    : "            pending.add(String.valueOf(" + name + "));");
+            writer.println("            pending.add(\"" + name + ": \");");
+        }
+        writer.println("        }");
+
+        writer.println("    }");
     }
 
-    private static void defineVisitor(
-            PrintWriter writer, String baseName, List<String> types) {
-        writer.println("  interface Visitor<R> {");
+    private static void defineVisitor(PrintWriter writer, String baseName, List<String> types,
+                                      String interfaceName, String returnType) {
+        writer.println("    interface " + interfaceName + " {");
 
-        for (String type : types) {
-            String typeName = type.split(":")[0].trim();
-            writer.println("    R visit" + typeName + baseName + "(" +
+        for (int i = 0; i < types.size(); i++) {
+            String typeName = types.get(i).split(":")[0].trim();
+            if (i > 0) writer.println();
+            writer.println("        " + returnType + " visit" + typeName + baseName + "(" +
                     typeName + " " + baseName.toLowerCase() + ");");
         }
 
-        writer.println("  }");
+        writer.println("    }");
     }
 
+    private static void defineDispatch(PrintWriter writer, String baseName, List<String> types,
+                                       String returnType, String visitorType) {
+        writer.println();
+        writer.println("    static " + returnType + " dispatch(" + baseName + " " + baseName.toLowerCase() +
+                ", " + visitorType + " visitor) {");
+        writer.println("        switch (" + baseName.toLowerCase() + ".kind) {");
+        for (String type : types) {
+            String className = type.split(":")[0].trim();
+            writer.println("            case " + kindName(type) + ": return visitor.visit" + className + baseName +
+                    "((" + className + ") " + baseName.toLowerCase() + ");");
+        }
+        writer.println("            default: throw new IllegalArgumentException(\"No such kind: \" + " +
+                baseName.toLowerCase() + ".kind);");
+        writer.println("        }");
+        writer.println("    }");
+    }
 }